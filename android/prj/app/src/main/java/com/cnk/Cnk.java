@@ -3,7 +3,12 @@ package com.cnk;
 import android.app.Application;
 import android.content.Context;
 
+import com.cnk.communication.ConnectionPool;
+import com.cnk.communication.Endpoint;
 import com.cnk.communication.NetworkHandler;
+import com.cnk.communication.WireFormat;
+import com.cnk.data.map.MapData;
+import com.cnk.data.map.TileDecodeProfile;
 
 public class Cnk extends Application {
 
@@ -18,8 +23,31 @@ public class Cnk extends Application {
     public void onCreate() {
         super.onCreate();
 
+        ConnectionPool.getInstance().setEndpoint(readEndpoint());
         NetworkHandler nh = NetworkHandler.getInstance();
         nh.setAppContext(getApplicationContext());
+        MapData.getInstance().setTileDecodeProfile(TileDecodeProfile.forDevice(this));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MapData.getInstance().trimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MapData.getInstance().trimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    // server set in res/values/server.xml, has to match the server config
+    private Endpoint readEndpoint() {
+        WireFormat wireFormat = WireFormat.parse(getString(R.string.server_protocol),
+                                                 getString(R.string.server_compression));
+        return new Endpoint(getString(R.string.server_address),
+                            getResources().getInteger(R.integer.server_port),
+                            wireFormat);
     }
 
     public static Context getAppContext() {
@@ -16,6 +16,7 @@ import android.widget.TextView;
 import com.cnk.R;
 import com.cnk.activities.map.ActionsDialog;
 import com.cnk.activities.map.MapContainer;
+import com.cnk.communication.NetworkHandler;
 import com.cnk.data.exhibits.ExhibitsData;
 import com.cnk.data.experiment.Action;
 import com.cnk.data.experiment.ExperimentData;
@@ -52,6 +53,7 @@ public class MapActivity extends AppCompatActivity implements Observer {
 
         ExhibitsData.getInstance().addObserver(this, this::onExhibitsChange);
         mapContainer.addObserver(this, this::exhibitClick);
+        NetworkHandler.getInstance().checkExhibitChanges();
     }
 
     @Override
@@ -73,7 +75,7 @@ public class MapActivity extends AppCompatActivity implements Observer {
             exhibits.addAll(ExhibitsData.getInstance().getExhibitsOfFloor(i));
         }
         mapContainer = new MapContainer(MapActivity.this, parentLayout);
-        mapContainer.updateExhibits(exhibits, true);
+        mapContainer.updateExhibits(exhibits, new ArrayList<>());
     }
 
     private void prepareActionBar() {
@@ -108,8 +110,9 @@ public class MapActivity extends AppCompatActivity implements Observer {
         breakDialog.setTitle(getString(R.string.break_action));
     }
 
-    private void onExhibitsChange(@NonNull List<Exhibit> changedExhibits, boolean fullRefresh) {
-        runOnUiThread(() -> mapContainer.updateExhibits(changedExhibits, fullRefresh));
+    private void onExhibitsChange(@NonNull List<Exhibit> changedExhibits,
+                                  @NonNull List<Integer> removedExhibitIds) {
+        runOnUiThread(() -> mapContainer.updateExhibits(changedExhibits, removedExhibitIds));
     }
 
     private ActionsDialog createActionsDialog(@NonNull List<Action> actions) {
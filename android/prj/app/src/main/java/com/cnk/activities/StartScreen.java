@@ -50,6 +50,11 @@ public class StartScreen extends AppCompatActivity implements Observer {
 
                 NetworkHandler nh = NetworkHandler.getInstance();
                 nh.startBgDataSync();
+
+                if (MapData.getInstance().isDownloadPending()) {
+                    Log.i(LOG_TAG, "Continuing interrupted map download");
+                    downloadMap();
+                }
             }
         } catch (DatabaseLoadException e) {
             e.printStackTrace();
@@ -76,8 +81,8 @@ public class StartScreen extends AppCompatActivity implements Observer {
     }
 
     private void raportsCountUpdate(int newCount) {
-        runOnUiThread(() -> raportsDisplay.setText(getString(R.string.raports_queue_size) + " " +
-                                                   Integer.toString(newCount)));
+        raportsDisplay.setText(getString(R.string.raports_queue_size) + " " +
+                               Integer.toString(newCount));
     }
 
     public void mapClick(View view) {
@@ -85,7 +90,7 @@ public class StartScreen extends AppCompatActivity implements Observer {
     }
 
     public void resetClick(View view) {
-        dbHelper.addOrUpdateExhibits(null, new ArrayList<>());
+        dbHelper.applyExhibitChanges(null, null, new ArrayList<>(), new ArrayList<>());
         Log.i(LOG_TAG, "Exhibits reset");
     }
 
@@ -153,17 +158,16 @@ public class StartScreen extends AppCompatActivity implements Observer {
         progressBar.setMax(100);
         progressBar.show();
 
+        // already on the UI thread, at most a few times per second
         MapData.getInstance().addObserver(this, (int downloaded, int allToDownload) -> {
-            runOnUiThread(() -> {
-                if (!isProgressBarSet[0]) {
-                    progressBar.setProgressNumberFormat("%1d/%2d");
-                    progressBar.setMax(allToDownload);
-                    isProgressBarSet[0] = true;
-                }
-                if (progressBar.isShowing()) {
-                    progressBar.setProgress(downloaded);
-                }
-            });
+            if (!isProgressBarSet[0]) {
+                progressBar.setProgressNumberFormat("%1d/%2d");
+                progressBar.setMax(allToDownload);
+                isProgressBarSet[0] = true;
+            }
+            if (progressBar.isShowing()) {
+                progressBar.setProgress(downloaded);
+            }
         });
     }
 }
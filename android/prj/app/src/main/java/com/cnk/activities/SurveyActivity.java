@@ -14,6 +14,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.cnk.R;
+import com.cnk.communication.TaskHandle;
 import com.cnk.communication.task.ServerTask;
 import com.cnk.communication.task.Task;
 import com.cnk.data.experiment.ExperimentData;
@@ -47,6 +48,7 @@ public class SurveyActivity extends AppCompatActivity implements Observer {
     private QuestionView currentQuestionView;
     private List<QuestionView> questionViews;
     private ProgressDialog spinner;
+    private TaskHandle experimentDownload;
     private Survey.SurveyType type;
 
     @Override
@@ -67,10 +69,16 @@ public class SurveyActivity extends AppCompatActivity implements Observer {
     }
 
     private void startExperimentDataDownload() {
+        if (ExperimentData.getInstance().prepareExperiment()) {
+            // changes of the experiment will be picked up by next visitors
+            ExperimentData.getInstance().downloadExperiment(null, null);
+            init();
+            return;
+        }
         setSpinner();
-        ExperimentData.getInstance()
-                      .downloadExperiment(this::experimentDataDownloaded,
-                                          this::experimetDataDownloadingFailed);
+        experimentDownload = ExperimentData.getInstance()
+                                           .downloadExperiment(this::experimentDataDownloaded,
+                                                               this::experimetDataDownloadingFailed);
     }
 
     private void setButtons() {
@@ -145,6 +153,9 @@ public class SurveyActivity extends AppCompatActivity implements Observer {
         super.onDestroy();
         goNext.setOnClickListener(null);
         goPrev.setOnClickListener(null);
+        if (experimentDownload != null) {
+            experimentDownload.cancel();
+        }
     }
 
     private void setSpinner() {
@@ -156,6 +167,9 @@ public class SurveyActivity extends AppCompatActivity implements Observer {
     }
 
     private void experimentDataDownloaded(Task t) {
+        if (!ExperimentData.getInstance().prepareExperiment()) {
+            return;
+        }
         init();
         spinner.dismiss();
     }
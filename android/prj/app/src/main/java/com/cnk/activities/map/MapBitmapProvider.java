@@ -2,15 +2,43 @@ package com.cnk.activities.map;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 
 import com.cnk.data.map.MapData;
 import com.qozix.tileview.graphics.BitmapProvider;
 import com.qozix.tileview.tiles.Tile;
 
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/*
+    Gives tile bitmaps back to MapData when TileView drops them. TileView has no callback
+    for that, so bitmaps handed out are checked on every request: a tile destroyed by TileView
+    no longer holds its bitmap, a tile TileView forgot is collected.
+ */
 public class MapBitmapProvider implements BitmapProvider {
 
+    // tile gets its bitmap right after it's returned, until then it holds none
+    private static final long ASSIGN_GRACE_MILLIS = 1000;
+
+    private static class HandedBitmap {
+        final WeakReference<Tile> tile;
+        final Bitmap bitmap;
+        final long handedMillis;
+
+        HandedBitmap(Tile tile, Bitmap bitmap, long handedMillis) {
+            this.tile = new WeakReference<>(tile);
+            this.bitmap = bitmap;
+            this.handedMillis = handedMillis;
+        }
+    }
+
     private int floor;
+    private final List<HandedBitmap> handed = new LinkedList<>();
+    private boolean released;
 
     public MapBitmapProvider(int floor) {
         this.floor = floor;
@@ -18,7 +46,44 @@ public class MapBitmapProvider implements BitmapProvider {
 
     @Override
     public Bitmap getBitmap(@NonNull Tile tile, @NonNull Context context) {
-        return MapData.getInstance()
-                      .getTile(floor, (Integer) tile.getData(), tile.getColumn(), tile.getRow());
+        releaseDropped();
+        Bitmap bitmap = MapData.getInstance()
+                               .getTile(floor, (Integer) tile.getData(), tile.getColumn(),
+                                        tile.getRow());
+        if (bitmap == null) {
+            return null;
+        }
+        synchronized (this) {
+            // render still running after the map view was destroyed
+            if (released) {
+                MapData.getInstance().releaseTile(bitmap);
+                return null;
+            }
+            handed.add(new HandedBitmap(tile, bitmap, SystemClock.uptimeMillis()));
+        }
+        return bitmap;
+    }
+
+    // map view is destroyed, none of its bitmaps is drawn anymore
+    public synchronized void releaseAll() {
+        released = true;
+        for (HandedBitmap handedBitmap : handed) {
+            MapData.getInstance().releaseTile(handedBitmap.bitmap);
+        }
+        handed.clear();
+    }
+
+    private synchronized void releaseDropped() {
+        long now = SystemClock.uptimeMillis();
+        Iterator<HandedBitmap> it = handed.iterator();
+        while (it.hasNext()) {
+            HandedBitmap handedBitmap = it.next();
+            Tile tile = handedBitmap.tile.get();
+            if (tile == null || (tile.getBitmap() != handedBitmap.bitmap &&
+                                 now - handedBitmap.handedMillis > ASSIGN_GRACE_MILLIS)) {
+                MapData.getInstance().releaseTile(handedBitmap.bitmap);
+                it.remove();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -39,11 +39,19 @@ public class MapContainer extends Observable<MapContainer.ExhibitClickListener>
         final int floor;
         final TileView tileView;
         final ViewGroup exhibitsView;
-
-        MapView(int floor, TileView tileView, ViewGroup exhibitsView) {
+        final MapBitmapProvider bitmapProvider;
+        final TilePrefetcher prefetcher;
+
+        MapView(int floor,
+                TileView tileView,
+                ViewGroup exhibitsView,
+                MapBitmapProvider bitmapProvider,
+                TilePrefetcher prefetcher) {
             this.floor = floor;
             this.tileView = tileView;
             this.exhibitsView = exhibitsView;
+            this.bitmapProvider = bitmapProvider;
+            this.prefetcher = prefetcher;
         }
     }
 
@@ -130,8 +138,12 @@ public class MapContainer extends Observable<MapContainer.ExhibitClickListener>
         }
 
         removeAllExhibits(mapView);
+        mapView.prefetcher.stop();
         parent.removeView(mapView.tileView);
         mapView.tileView.destroy();
+        mapView.bitmapProvider.releaseAll();
+        Log.i(LOG_TAG, "Tile cache: " + MapData.getInstance().getTileCache() + ", bitmaps: " +
+                       MapData.getInstance().getBitmapPool());
         mapView = null;
     }
 
@@ -143,22 +155,25 @@ public class MapContainer extends Observable<MapContainer.ExhibitClickListener>
         tileView.setSize(maxZoom.getWidth(), maxZoom.getHeight());
         tileView.defineBounds(0, 0, orgResolution.getWidth(), orgResolution.getHeight());
 
-        tileView.setBitmapProvider(new MapBitmapProvider(floor));
+        MapBitmapProvider bitmapProvider = new MapBitmapProvider(floor);
+        tileView.setBitmapProvider(bitmapProvider);
         tileView.setTransitionsEnabled(false);
+        // bitmaps are shared with the tile cache and reused by the bitmap pool
         tileView.setShouldRecycleBitmaps(false);
         tileView.setShouldScaleToFit(true);
 
         ViewGroup exhibitsView = new RelativeLayout(context);
         tileView.addScalingViewGroup(exhibitsView);
 
-        return new MapView(floor, tileView, exhibitsView);
+        TilePrefetcher prefetcher = new TilePrefetcher(floor, tileView);
+        return new MapView(floor, tileView, exhibitsView, bitmapProvider, prefetcher);
     }
 
     private void createZoomLevels(@NonNull MapView mapView) {
         int floor = mapView.floor;
         float maxWidth = MapData.getInstance().getMaxZoomResolution(floor).getWidth();
 
-        List<ZoomLevelInfo> zoomLevels = MapData.getInstance().getZoomLevels(floor);
+        List<ZoomLevelInfo> zoomLevels = MapData.getInstance().getShownZoomLevels(floor);
         for (int i = 0; i < zoomLevels.size(); i++) {
             ZoomLevelInfo zoomLevel = zoomLevels.get(i);
             float scale = zoomLevel.scaledSize.getWidth() / maxWidth;
@@ -181,13 +196,14 @@ public class MapContainer extends Observable<MapContainer.ExhibitClickListener>
     }
 
     // quite naive way to update, but it may be enough
-    public void updateExhibits(@NonNull List<Exhibit> updatedExhibits, boolean fullRefresh) {
+    public void updateExhibits(@NonNull List<Exhibit> updatedExhibits,
+                               @NonNull List<Integer> removedExhibitIds) {
         if (mapView != null) {
             removeAllExhibits(mapView);
         }
 
-        if (fullRefresh) {
-            exhibits.clear();
+        for (Integer id : removedExhibitIds) {
+            exhibits.remove(id);
         }
 
         for (Exhibit e : updatedExhibits) {
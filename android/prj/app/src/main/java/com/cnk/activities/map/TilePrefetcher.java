@@ -0,0 +1,221 @@
+package com.cnk.activities.map;
+
+import com.cnk.data.map.MapData;
+import com.cnk.data.map.ZoomLevelInfo;
+import com.qozix.tileview.TileView;
+import com.qozix.tileview.widgets.ZoomPanLayout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+    Decodes tiles around the viewport into the tile cache before TileView asks for them:
+    the ring of tiles next to the visible ones and the visible part of the next zoom level,
+    nearest to the center first. Tiles not decoded yet are dropped when the viewport moves,
+    work is limited to a few decodes at once and a short queue.
+ */
+public class TilePrefetcher implements ZoomPanLayout.ZoomPanListener {
+
+    private static final int WORKERS = 2;
+    private static final int MAX_QUEUED = 48;
+    private static final int RING_WIDTH = 1;
+
+    private static class PrefetchTile implements Comparable<PrefetchTile> {
+        final int level;
+        final int column;
+        final int row;
+        final float distance;
+
+        PrefetchTile(int level, int column, int row, float distance) {
+            this.level = level;
+            this.column = column;
+            this.row = row;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(PrefetchTile other) {
+            return Float.compare(distance, other.distance);
+        }
+    }
+
+    private final int floor;
+    private final TileView tileView;
+    private final List<ZoomLevelInfo> zoomLevels;
+    private final float maxWidth;
+    private final ExecutorService executor;
+    private final LinkedList<PrefetchTile> queue;
+    private int running;
+    private boolean stopped;
+
+    public TilePrefetcher(int floor, TileView tileView) {
+        this.floor = floor;
+        this.tileView = tileView;
+        this.zoomLevels = MapData.getInstance().getShownZoomLevels(floor);
+        this.maxWidth = MapData.getInstance().getMaxZoomResolution(floor).getWidth();
+        this.executor = Executors.newFixedThreadPool(WORKERS, (runnable) -> {
+            Thread thread = new Thread(runnable, "TilePrefetcher");
+            // decoding of visible tiles goes first
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.queue = new LinkedList<>();
+        tileView.addZoomPanListener(this);
+    }
+
+    public void stop() {
+        tileView.removeZoomPanListener(this);
+        synchronized (this) {
+            stopped = true;
+            queue.clear();
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public void onPanBegin(int x, int y, Origination origin) {
+    }
+
+    @Override
+    public void onPanUpdate(int x, int y, Origination origin) {
+        update();
+    }
+
+    @Override
+    public void onPanEnd(int x, int y, Origination origin) {
+        update();
+    }
+
+    @Override
+    public void onZoomBegin(float scale, Origination origin) {
+    }
+
+    @Override
+    public void onZoomUpdate(float scale, Origination origin) {
+        update();
+    }
+
+    @Override
+    public void onZoomEnd(float scale, Origination origin) {
+        update();
+    }
+
+    // on the UI thread, after every move of the viewport
+    public void update() {
+        float scale = tileView.getScale();
+        int left = tileView.getScrollX();
+        int top = tileView.getScrollY();
+        int right = left + tileView.getWidth();
+        int bottom = top + tileView.getHeight();
+        if (zoomLevels.isEmpty() || right <= left || bottom <= top) {
+            return;
+        }
+
+        int level = levelForScale(scale);
+        List<PrefetchTile> ring = new ArrayList<>();
+        addTiles(ring, level, scale, left, top, right, bottom, RING_WIDTH);
+        Collections.sort(ring);
+        List<PrefetchTile> nextLevel = new ArrayList<>();
+        if (level + 1 < zoomLevels.size()) {
+            addTiles(nextLevel, level + 1, scale, left, top, right, bottom, 0);
+            Collections.sort(nextLevel);
+        }
+
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            queue.clear();
+            for (PrefetchTile tile : ring) {
+                queue.add(tile);
+            }
+            for (PrefetchTile tile : nextLevel) {
+                queue.add(tile);
+            }
+            while (queue.size() > MAX_QUEUED) {
+                queue.removeLast();
+            }
+            while (running < WORKERS && running < queue.size()) {
+                running++;
+                executor.execute(this::prefetch);
+            }
+        }
+    }
+
+    private void prefetch() {
+        while (true) {
+            PrefetchTile tile;
+            synchronized (this) {
+                if (stopped || queue.isEmpty()) {
+                    running--;
+                    return;
+                }
+                tile = queue.removeFirst();
+            }
+            MapData.getInstance().prefetchTile(floor, tile.level, tile.column, tile.row);
+        }
+    }
+
+    // same choice as TileView makes, the least detailed level not smaller than the scale
+    private int levelForScale(float scale) {
+        for (int level = 0; level < zoomLevels.size(); level++) {
+            if (levelScale(level) >= scale) {
+                return level;
+            }
+        }
+        return zoomLevels.size() - 1;
+    }
+
+    private float levelScale(int level) {
+        return zoomLevels.get(level).scaledSize.getWidth() / maxWidth;
+    }
+
+    /*
+        Tiles of the level covering the viewport extended by ring tiles on each side,
+        with ring > 0 only the ring itself. Viewport is in pixels of the map at the scale.
+     */
+    private void addTiles(List<PrefetchTile> tiles,
+                          int level,
+                          float scale,
+                          int left,
+                          int top,
+                          int right,
+                          int bottom,
+                          int ring) {
+        ZoomLevelInfo info = zoomLevels.get(level);
+        int tileWidth = info.tileSize.getWidth();
+        int tileHeight = info.tileSize.getHeight();
+        float relativeScale = scale / levelScale(level);
+        float shownWidth = tileWidth * relativeScale;
+        float shownHeight = tileHeight * relativeScale;
+        int columns = (info.scaledSize.getWidth() + tileWidth - 1) / tileWidth;
+        int rows = (info.scaledSize.getHeight() + tileHeight - 1) / tileHeight;
+
+        int firstColumn = (int) (left / shownWidth);
+        int lastColumn = (int) ((right - 1) / shownWidth);
+        int firstRow = (int) (top / shownHeight);
+        int lastRow = (int) ((bottom - 1) / shownHeight);
+        float centerX = (left + right) / 2f;
+        float centerY = (top + bottom) / 2f;
+        for (int column = Math.max(firstColumn - ring, 0);
+             column <= Math.min(lastColumn + ring, columns - 1);
+             column++) {
+            for (int row = Math.max(firstRow - ring, 0);
+                 row <= Math.min(lastRow + ring, rows - 1);
+                 row++) {
+                boolean visible = column >= firstColumn && column <= lastColumn &&
+                                  row >= firstRow && row <= lastRow;
+                if (ring > 0 && visible) {
+                    continue;
+                }
+                float dx = (column + 0.5f) * shownWidth - centerX;
+                float dy = (row + 0.5f) * shownHeight - centerY;
+                tiles.add(new PrefetchTile(level, column, row, dx * dx + dy * dy));
+            }
+        }
+    }
+}
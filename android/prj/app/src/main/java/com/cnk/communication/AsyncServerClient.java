@@ -0,0 +1,298 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import com.cnk.communication.thrift.CurrentExperimentRequest;
+import com.cnk.communication.thrift.CurrentExperimentResponse;
+import com.cnk.communication.thrift.ExhibitChangesRequest;
+import com.cnk.communication.thrift.ExhibitChangesResponse;
+import com.cnk.communication.thrift.HelloMsg;
+import com.cnk.communication.thrift.MapImage;
+import com.cnk.communication.thrift.NewExhibitsRequest;
+import com.cnk.communication.thrift.NewExhibitsResponse;
+import com.cnk.communication.thrift.RawReport;
+import com.cnk.communication.thrift.Server;
+import com.cnk.utilities.Consts;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TNonblockingSocket;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Non blocking client of the server. All calls are handled by one selector thread,
+    each call returns a future instead of blocking a thread for the whole session.
+    Thrift async client handles one call at a time, so a few of them are kept
+    and calls wait for a free one when all are busy.
+    Socket of a client is closed when the client fails or the whole client is closed.
+ */
+public class AsyncServerClient {
+
+    private interface Invocation {
+        void invoke(Server.AsyncClient client, AsyncMethodCallback callback) throws TException;
+    }
+
+    private interface ResultReader<C, T> {
+        T read(C call) throws TException;
+    }
+
+    private interface PendingCall {
+        void start(Server.AsyncClient client);
+
+        void abort(Exception e);
+    }
+
+    private static final String LOG_TAG = "AsyncServerClient";
+    private static final int MAX_CLIENTS = 4;
+    private static final int TIMEOUT_SECONDS = 10;
+
+    private final Endpoint endpoint;
+    private final TProtocolFactory protocolFactory;
+    private final TAsyncClientManager manager;
+    private final Deque<Server.AsyncClient> idleClients;
+    private final Deque<PendingCall> pendingCalls;
+    // every open client, idle or busy, with its socket
+    private final Map<Server.AsyncClient, TNonblockingSocket> sockets;
+    private boolean closed = false;
+
+    public AsyncServerClient(Endpoint endpoint) throws IOException {
+        if (endpoint.getWireFormat().getCompression() != WireFormat.Compression.NONE) {
+            throw new IllegalArgumentException("Async client doesn't support compression");
+        }
+        this.endpoint = endpoint;
+        this.protocolFactory = endpoint.getWireFormat().createProtocolFactory();
+        this.manager = new TAsyncClientManager();
+        this.idleClients = new ArrayDeque<>();
+        this.pendingCalls = new ArrayDeque<>();
+        this.sockets = new IdentityHashMap<>();
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public RpcFuture<Integer> ping(HelloMsg msg) {
+        return call((client, callback) -> client.ping(msg, callback),
+                    Server.AsyncClient.ping_call::getResult);
+    }
+
+    public RpcFuture<NewExhibitsResponse> getNewExhibits(NewExhibitsRequest request) {
+        return call((client, callback) -> client.getNewExhibits(request, callback),
+                    Server.AsyncClient.getNewExhibits_call::getResult);
+    }
+
+    public RpcFuture<ExhibitChangesResponse> getExhibitChanges(ExhibitChangesRequest request) {
+        return call((client, callback) -> client.getExhibitChanges(request, callback),
+                    Server.AsyncClient.getExhibitChanges_call::getResult);
+    }
+
+    public RpcFuture<CurrentExperimentResponse> getCurrentExperiment() {
+        return call((client, callback) -> client.getCurrentExperiment(callback),
+                    Server.AsyncClient.getCurrentExperiment_call::getResult);
+    }
+
+    public RpcFuture<CurrentExperimentResponse> getCurrentExperimentIfChanged(
+            CurrentExperimentRequest request) {
+        return call((client, callback) -> client.getCurrentExperimentIfChanged(request, callback),
+                    Server.AsyncClient.getCurrentExperimentIfChanged_call::getResult);
+    }
+
+    public RpcFuture<Map<Integer, MapImage>> getMapImages() {
+        return call((client, callback) -> client.getMapImages(callback),
+                    Server.AsyncClient.getMapImages_call::getResult);
+    }
+
+    public RpcFuture<Integer> getIdForNewReport() {
+        return call((client, callback) -> client.getIdForNewReport(callback),
+                    Server.AsyncClient.getIdForNewReport_call::getResult);
+    }
+
+    public RpcFuture<List<Integer>> getIdsForNewReports(int count) {
+        return call((client, callback) -> client.getIdsForNewReports(count, callback),
+                    Server.AsyncClient.getIdsForNewReports_call::getResult);
+    }
+
+    public RpcFuture<Void> saveReport(RawReport report) {
+        return call((client, callback) -> client.saveReport(report, callback),
+                    (Server.AsyncClient.saveReport_call call) -> {
+                        call.getResult();
+                        return null;
+                    });
+    }
+
+    public RpcFuture<Void> saveReports(List<RawReport> reports) {
+        return call((client, callback) -> client.saveReports(reports, callback),
+                    (Server.AsyncClient.saveReports_call call) -> {
+                        call.getResult();
+                        return null;
+                    });
+    }
+
+    /*
+        Calls in progress may still complete, waiting ones fail. Selector thread is stopped
+        after the last call in progress ends, which takes at most the call timeout.
+     */
+    public void close() {
+        List<PendingCall> aborted;
+        synchronized (this) {
+            closed = true;
+            aborted = new ArrayList<>(pendingCalls);
+            pendingCalls.clear();
+            for (Server.AsyncClient client : idleClients) {
+                closeClient(client);
+            }
+            idleClients.clear();
+            stopIfDrained();
+        }
+        for (PendingCall call : aborted) {
+            call.abort(new IllegalStateException("Client closed"));
+        }
+    }
+
+    private <C, T> RpcFuture<T> call(Invocation invocation, ResultReader<C, T> reader) {
+        RpcFuture<T> future = new RpcFuture<>();
+        PendingCall call = new PendingCall() {
+            @Override
+            public void start(Server.AsyncClient client) {
+                invoke(client, invocation, reader, future);
+            }
+
+            @Override
+            public void abort(Exception e) {
+                future.fail(e);
+            }
+        };
+
+        Server.AsyncClient client;
+        try {
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("Client closed");
+                }
+                client = tryAcquire();
+                if (client == null) {
+                    pendingCalls.add(call);
+                    return future;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. resolving the server address failed, caller only gets the future
+            future.fail(e);
+            return future;
+        }
+        call.start(client);
+        return future;
+    }
+
+    private <C, T> void invoke(Server.AsyncClient client,
+                               Invocation invocation,
+                               ResultReader<C, T> reader,
+                               RpcFuture<T> future) {
+        try {
+            invocation.invoke(client, new AsyncMethodCallback<C>() {
+                @Override
+                public void onComplete(C call) {
+                    T result;
+                    try {
+                        result = reader.read(call);
+                    } catch (TException e) {
+                        // exception declared by the service, connection is still fine
+                        release(client);
+                        future.fail(e);
+                        return;
+                    }
+                    release(client);
+                    future.complete(result);
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Log.e(LOG_TAG, "Call failed: " + e.toString());
+                    discard(client);
+                    future.fail(e);
+                }
+            });
+        } catch (TException | RuntimeException e) {
+            discard(client);
+            future.fail(e);
+        }
+    }
+
+    private Server.AsyncClient tryAcquire() throws IOException {
+        Server.AsyncClient client = idleClients.poll();
+        if (client != null || sockets.size() >= MAX_CLIENTS) {
+            return client;
+        }
+        TNonblockingSocket socket =
+                endpoint.openNonblocking(TIMEOUT_SECONDS * (int) Consts.MILLIS_IN_SEC);
+        client = new Server.AsyncClient(protocolFactory, manager, socket);
+        client.setTimeout(TIMEOUT_SECONDS * Consts.MILLIS_IN_SEC);
+        sockets.put(client, socket);
+        return client;
+    }
+
+    private void release(Server.AsyncClient client) {
+        PendingCall next;
+        synchronized (this) {
+            if (closed) {
+                closeClient(client);
+                stopIfDrained();
+                return;
+            }
+            next = pendingCalls.poll();
+            if (next == null) {
+                idleClients.push(client);
+                return;
+            }
+        }
+        next.start(client);
+    }
+
+    // client which failed can't be used any more, its place is given to a waiting call
+    private void discard(Server.AsyncClient failed) {
+        PendingCall next;
+        Server.AsyncClient client;
+        synchronized (this) {
+            closeClient(failed);
+            if (closed) {
+                stopIfDrained();
+                return;
+            }
+            if (pendingCalls.isEmpty()) {
+                return;
+            }
+            next = pendingCalls.poll();
+            try {
+                client = tryAcquire();
+            } catch (IOException | RuntimeException e) {
+                client = null;
+                next.abort(e);
+            }
+        }
+        if (client != null) {
+            next.start(client);
+        }
+    }
+
+    private void closeClient(Server.AsyncClient client) {
+        TNonblockingSocket socket = sockets.remove(client);
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private void stopIfDrained() {
+        if (sockets.isEmpty()) {
+            manager.stop();
+        }
+    }
+}
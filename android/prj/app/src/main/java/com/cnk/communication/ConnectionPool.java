@@ -0,0 +1,207 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import com.cnk.communication.thrift.HelloMsg;
+import com.cnk.communication.thrift.Server;
+import com.cnk.exceptions.DeadlineExceededException;
+import com.cnk.utilities.Consts;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/*
+    Keeps a few opened sessions with the server, so tasks run one after another
+    don't have to resolve the address and open a new socket each time.
+ */
+public class ConnectionPool {
+
+    public static class Connection {
+        private final TTransport transport;
+        private final DeadlineProtocol deadlineProtocol;
+        private final Server.Client client;
+        private final Endpoint endpoint;
+        private final Deadline.Abort abort;
+        private Deadline deadline;
+        private long lastUsedMillis;
+
+        private Connection(TTransport transport, TSocket socket, Endpoint endpoint) {
+            this.transport = transport;
+            this.endpoint = endpoint;
+            TProtocol protocol = endpoint.getWireFormat().createProtocol(transport);
+            this.deadlineProtocol = new DeadlineProtocol(protocol, socket);
+            this.client = new Server.Client(new InstrumentedProtocol(deadlineProtocol,
+                                                                     TransportStats.getInstance()));
+            this.abort = this::close;
+            this.lastUsedMillis = System.currentTimeMillis();
+        }
+
+        public Server.Client getClient() {
+            return client;
+        }
+
+        // calls get timeouts from the deadline, cancelling it closes the connection
+        private void bind(Deadline deadline) {
+            this.deadline = deadline;
+            deadlineProtocol.setDeadline(deadline);
+            deadline.attach(abort);
+        }
+
+        private void unbind() {
+            if (deadline != null) {
+                deadline.detach(abort);
+                deadline = null;
+            }
+            deadlineProtocol.setDeadline(null);
+        }
+
+        private long idleMillis() {
+            return System.currentTimeMillis() - lastUsedMillis;
+        }
+
+        private void close() {
+            transport.close();
+        }
+    }
+
+    private static final String LOG_TAG = "ConnectionPool";
+    private static final int MAX_IDLE_CONNECTIONS = 2;
+    private static final long MAX_IDLE_SECONDS = 90;
+    private static final long VALIDATE_AFTER_IDLE_SECONDS = 10;
+    private static final int PING_NUM = 42;
+    private static final String PING_MSG = "ping";
+    private static ConnectionPool instance;
+
+    private final Deque<Connection> idleConnections;
+    private volatile Endpoint endpoint;
+
+    private ConnectionPool() {
+        idleConnections = new ArrayDeque<>();
+        endpoint = Endpoint.DEFAULT;
+    }
+
+    public static synchronized ConnectionPool getInstance() {
+        if (instance == null) {
+            instance = new ConnectionPool();
+        }
+        return instance;
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    // connections opened to the previous endpoint are closed when they are released
+    public void setEndpoint(Endpoint endpoint) {
+        this.endpoint = endpoint;
+        closeAll();
+    }
+
+    // connection is bound to the deadline until it's released or invalidated
+    public Connection acquire(Deadline deadline) throws TTransportException {
+        Connection connection;
+        while ((connection = pollIdle()) != null) {
+            connection.bind(deadline);
+            if (isHealthy(connection)) {
+                Log.i(LOG_TAG, "Reusing connection");
+                return connection;
+            }
+            Log.i(LOG_TAG, "Dropping dead connection");
+            connection.unbind();
+            connection.close();
+        }
+        connection = open(deadline);
+        connection.bind(deadline);
+        return connection;
+    }
+
+    // connection has to be in a clean state - after a finished call
+    public void release(Connection connection) {
+        connection.unbind();
+        connection.lastUsedMillis = System.currentTimeMillis();
+        synchronized (this) {
+            evictIdle();
+            if (connection.endpoint == endpoint &&
+                idleConnections.size() < MAX_IDLE_CONNECTIONS) {
+                idleConnections.push(connection);
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    // used when connection state is unknown, e.g. call was interrupted by an exception
+    public void invalidate(Connection connection) {
+        Log.i(LOG_TAG, "Invalidating connection");
+        connection.unbind();
+        connection.close();
+    }
+
+    public synchronized void closeAll() {
+        for (Connection connection : idleConnections) {
+            connection.close();
+        }
+        idleConnections.clear();
+    }
+
+    private synchronized Connection pollIdle() {
+        evictIdle();
+        return idleConnections.poll();
+    }
+
+    private void evictIdle() {
+        Iterator<Connection> it = idleConnections.iterator();
+        while (it.hasNext()) {
+            Connection connection = it.next();
+            if (connection.idleMillis() > MAX_IDLE_SECONDS * Consts.MILLIS_IN_SEC ||
+                !connection.transport.isOpen()) {
+                it.remove();
+                connection.close();
+            }
+        }
+    }
+
+    private boolean isHealthy(Connection connection) {
+        if (!connection.transport.isOpen()) {
+            return false;
+        }
+        if (connection.idleMillis() < VALIDATE_AFTER_IDLE_SECONDS * Consts.MILLIS_IN_SEC) {
+            return true;
+        }
+        try {
+            return connection.getClient().ping(new HelloMsg(PING_NUM, PING_MSG)) == PING_NUM;
+        } catch (TException e) {
+            Log.i(LOG_TAG, "Ping failed: " + e.toString());
+            return false;
+        }
+    }
+
+    private Connection open(Deadline deadline) throws TTransportException {
+        Endpoint target = endpoint;
+        Log.i(LOG_TAG, "Opening socket for " + target);
+        TSocket socket;
+        try {
+            socket = target.createSocket(deadline.timeoutMillis());
+        } catch (DeadlineExceededException e) {
+            throw new TTransportException(TTransportException.TIMED_OUT, e.getMessage());
+        }
+        Deadline.Abort abort = socket::close;
+        deadline.attach(abort);
+        TTransport transport;
+        try {
+            transport = target.open(new InstrumentedTransport(socket,
+                                                              TransportStats.getInstance()));
+        } finally {
+            deadline.detach(abort);
+        }
+        Log.i(LOG_TAG, "Opened socket");
+        return new Connection(transport, socket, target);
+    }
+}
@@ -0,0 +1,71 @@
+package com.cnk.communication;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+/*
+    Keeps track of wifi state using connectivity broadcasts, so it can be checked
+    without asking the system each time and sync can be woken up on reconnection.
+ */
+public class ConnectivityMonitor extends BroadcastReceiver {
+
+    public interface WifiStateAction {
+        void onWifiStateChange(boolean connected);
+    }
+
+    private static final String LOG_TAG = "ConnectivityMonitor";
+
+    private final Context context;
+    private final WifiStateAction action;
+    private volatile boolean wifiConnected;
+    private boolean registered = false;
+
+    public ConnectivityMonitor(Context context, WifiStateAction action) {
+        this.context = context;
+        this.action = action;
+    }
+
+    public synchronized void start() {
+        if (registered) {
+            return;
+        }
+        wifiConnected = readWifiState();
+        // connectivity broadcast is sticky, so the current state is delivered right after this
+        context.registerReceiver(this, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        registered = true;
+    }
+
+    public synchronized void stop() {
+        if (registered) {
+            context.unregisterReceiver(this);
+            registered = false;
+        }
+    }
+
+    public boolean isWifiConnected() {
+        return wifiConnected;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        boolean connected = readWifiState();
+        if (connected == wifiConnected) {
+            return;
+        }
+        wifiConnected = connected;
+        Log.i(LOG_TAG, "Wifi " + (connected ? "connected" : "disconnected"));
+        action.onWifiStateChange(connected);
+    }
+
+    private boolean readWifiState() {
+        ConnectivityManager connManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo wifi = connManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
+        return wifi != null && wifi.isConnected();
+    }
+}
@@ -0,0 +1,98 @@
+package com.cnk.communication;
+
+import com.cnk.exceptions.DeadlineExceededException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Time budget of one task, shared by everything it does: connecting, each call
+    and downloads which follow. Budget is counted from start, not from creation,
+    so time spent waiting in a queue isn't taken from it.
+    Cancelling closes whatever the task is blocked on, so it stops right away
+    instead of waiting for a timeout.
+ */
+public class Deadline {
+
+    public interface Abort {
+        void abort();
+    }
+
+    private final long budgetMillis;
+    private final List<Abort> aborts;
+    private long endMillis = 0;
+    private boolean cancelled = false;
+
+    public Deadline(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.aborts = new ArrayList<>();
+    }
+
+    public synchronized void start() {
+        endMillis = System.currentTimeMillis() + budgetMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public synchronized long remainingMillis() {
+        if (endMillis == 0) {
+            return budgetMillis;
+        }
+        return Math.max(0, endMillis - System.currentTimeMillis());
+    }
+
+    public synchronized boolean isExpired() {
+        return endMillis != 0 && System.currentTimeMillis() >= endMillis;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // timeout for the next blocking operation
+    public int timeoutMillis() throws DeadlineExceededException {
+        check();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, remainingMillis()));
+    }
+
+    public void check() throws DeadlineExceededException {
+        if (isCancelled()) {
+            throw new DeadlineExceededException("Cancelled");
+        }
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline of " + budgetMillis + " ms exceeded");
+        }
+    }
+
+    public void cancel() {
+        List<Abort> toAbort;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toAbort = new ArrayList<>(aborts);
+            aborts.clear();
+        }
+        for (Abort abort : toAbort) {
+            abort.abort();
+        }
+    }
+
+    // abort is called on cancel until it's detached, right away if already cancelled
+    public void attach(Abort abort) {
+        synchronized (this) {
+            if (!cancelled) {
+                aborts.add(abort);
+                return;
+            }
+        }
+        abort.abort();
+    }
+
+    public synchronized void detach(Abort abort) {
+        aborts.remove(abort);
+    }
+}
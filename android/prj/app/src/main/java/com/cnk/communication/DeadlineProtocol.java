@@ -0,0 +1,42 @@
+package com.cnk.communication;
+
+import com.cnk.exceptions.DeadlineExceededException;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
+
+/*
+    Before each call sets socket timeout to what is left of the deadline
+    of the task using the connection, so one call can't outlive its task.
+ */
+public class DeadlineProtocol extends TProtocolDecorator {
+
+    private final TSocket socket;
+    private volatile Deadline deadline;
+
+    public DeadlineProtocol(TProtocol protocol, TSocket socket) {
+        super(protocol);
+        this.socket = socket;
+    }
+
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void writeMessageBegin(TMessage message) throws TException {
+        Deadline current = deadline;
+        if (current != null) {
+            try {
+                socket.setTimeout(current.timeoutMillis());
+            } catch (DeadlineExceededException e) {
+                throw new TTransportException(TTransportException.TIMED_OUT, e.getMessage());
+            }
+        }
+        super.writeMessageBegin(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.cnk.communication;
+
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.io.IOException;
+
+public class Endpoint {
+
+    public static final Endpoint DEFAULT = new Endpoint("zpp.ddns.us", 9090, WireFormat.DEFAULT);
+
+    private final String address;
+    private final int port;
+    private final WireFormat wireFormat;
+
+    public Endpoint(String address, int port, WireFormat wireFormat) {
+        this.address = address;
+        this.port = port;
+        this.wireFormat = wireFormat;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public TSocket createSocket(int timeoutMillis) {
+        return new TSocket(address, port, timeoutMillis);
+    }
+
+    public TTransport open(int timeoutMillis) throws TTransportException {
+        return open(createSocket(timeoutMillis));
+    }
+
+    // socket may be wrapped, e.g. to be instrumented
+    public TTransport open(TTransport socket) throws TTransportException {
+        TTransport transport = wireFormat.wrap(new TFramedTransport(socket));
+        transport.open();
+        return transport;
+    }
+
+    // for async clients, which always use frames and connect on first call
+    public TNonblockingSocket openNonblocking(int timeoutMillis) throws IOException {
+        return new TNonblockingSocket(address, port, timeoutMillis);
+    }
+
+    @Override
+    public String toString() {
+        return address + ":" + port + " (" + wireFormat + ")";
+    }
+}
@@ -0,0 +1,125 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import com.cnk.communication.task.ServerTask;
+import com.cnk.communication.task.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Single flight for network operations: while an operation is queued or running,
+    requesting it again attaches callbacks to the same task instead of starting another.
+ */
+class InFlightTasks {
+
+    class Flight {
+        private final String key;
+        private final List<TaskHandle> handles = new ArrayList<>();
+        private Task task;
+        private boolean started = false;
+        private boolean dropped = false;
+
+        private Flight(String key) {
+            this.key = key;
+        }
+
+        private void run() {
+            synchronized (InFlightTasks.this) {
+                if (dropped) {
+                    Log.i(LOG_TAG, "All requests for " + key + " cancelled, not running it");
+                    return;
+                }
+                started = true;
+            }
+            try {
+                task.run();
+            } finally {
+                complete();
+                for (TaskHandle handle : handlesCopy()) {
+                    handle.finish();
+                }
+            }
+        }
+
+        private void onSuccess(Task sender) {
+            complete();
+            for (TaskHandle handle : handlesCopy()) {
+                handle.notifySuccess(sender);
+            }
+        }
+
+        private void onFailure(Task sender, ServerTask.FailureReason reason) {
+            complete();
+            for (TaskHandle handle : handlesCopy()) {
+                handle.notifyFailure(sender, reason);
+            }
+        }
+
+        // running task nobody waits for is cancelled, so its thread and socket are freed
+        void detach(TaskHandle handle) {
+            boolean cancel;
+            synchronized (InFlightTasks.this) {
+                handles.remove(handle);
+                if (!handles.isEmpty() || flights.get(key) != this) {
+                    return;
+                }
+                flights.remove(key);
+                dropped = !started;
+                cancel = started;
+            }
+            if (cancel) {
+                Log.i(LOG_TAG, "All requests for " + key + " cancelled, cancelling it");
+                task.cancel();
+            }
+        }
+
+        // once results are being delivered new requests have to start a new task
+        private void complete() {
+            synchronized (InFlightTasks.this) {
+                if (flights.get(key) == this) {
+                    flights.remove(key);
+                }
+            }
+        }
+
+        private List<TaskHandle> handlesCopy() {
+            synchronized (InFlightTasks.this) {
+                return new ArrayList<>(handles);
+            }
+        }
+    }
+
+    private static final String LOG_TAG = "InFlightTasks";
+
+    private final TaskScheduler taskScheduler;
+    private final Map<String, Flight> flights;
+
+    InFlightTasks(TaskScheduler taskScheduler) {
+        this.taskScheduler = taskScheduler;
+        this.flights = new HashMap<>();
+    }
+
+    synchronized TaskHandle submit(String key,
+                                   TaskScheduler.Lane lane,
+                                   SyncScheduler.TaskFactory factory,
+                                   NetworkHandler.SuccessAction success,
+                                   NetworkHandler.FailureAction failure) {
+        Flight flight = flights.get(key);
+        if (flight == null) {
+            Flight newFlight = new Flight(key);
+            newFlight.task = factory.create(newFlight::onSuccess, newFlight::onFailure);
+            flights.put(key, newFlight);
+            taskScheduler.submit(lane, newFlight::run);
+            flight = newFlight;
+        } else {
+            Log.i(LOG_TAG, "Joining " + key + " already in flight");
+        }
+        TaskHandle handle = new TaskHandle(flight, success, failure);
+        flight.handles.add(handle);
+        return handle;
+    }
+}
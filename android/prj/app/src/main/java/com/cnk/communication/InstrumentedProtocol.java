@@ -0,0 +1,38 @@
+package com.cnk.communication;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+
+/*
+    Measures round trip of each call, from writing the request
+    to reading the whole response, including server processing.
+ */
+public class InstrumentedProtocol extends TProtocolDecorator {
+
+    private final TransportStats stats;
+    private String callName;
+    private long callStartNanos;
+
+    public InstrumentedProtocol(TProtocol protocol, TransportStats stats) {
+        super(protocol);
+        this.stats = stats;
+    }
+
+    @Override
+    public void writeMessageBegin(TMessage message) throws TException {
+        callName = message.name;
+        callStartNanos = System.nanoTime();
+        super.writeMessageBegin(message);
+    }
+
+    @Override
+    public void readMessageEnd() throws TException {
+        super.readMessageEnd();
+        if (callName != null) {
+            stats.recordCall(callName, (System.nanoTime() - callStartNanos) / 1000000);
+            callName = null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.cnk.communication;
+
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/*
+    Goes directly over the socket (under framing and compression), so counts what
+    is really sent. Frames are counted by following frame size headers.
+ */
+public class InstrumentedTransport extends TTransport {
+
+    private static class FrameCounter {
+        private final byte[] header = new byte[4];
+        private int headerBytes = 0;
+        private int frameBytesLeft = 0;
+
+        // returns number of frames started in given bytes
+        private int count(byte[] buf, int off, int len) {
+            int frames = 0;
+            int pos = off;
+            int end = off + len;
+            while (pos < end) {
+                if (frameBytesLeft > 0) {
+                    int skipped = Math.min(frameBytesLeft, end - pos);
+                    frameBytesLeft -= skipped;
+                    pos += skipped;
+                    continue;
+                }
+                header[headerBytes++] = buf[pos++];
+                if (headerBytes == header.length) {
+                    frameBytesLeft = TFramedTransport.decodeFrameSize(header);
+                    headerBytes = 0;
+                    frames++;
+                }
+            }
+            return frames;
+        }
+    }
+
+    private final TTransport transport;
+    private final TransportStats stats;
+    private final FrameCounter sentFrames;
+    private final FrameCounter receivedFrames;
+    private long unflushedBytes = 0;
+    private long unflushedFrames = 0;
+    private long flushNanos;
+    private boolean awaitingResponse = false;
+
+    public InstrumentedTransport(TTransport transport, TransportStats stats) {
+        this.transport = transport;
+        this.stats = stats;
+        this.sentFrames = new FrameCounter();
+        this.receivedFrames = new FrameCounter();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    @Override
+    public void open() throws TTransportException {
+        long start = System.nanoTime();
+        try {
+            transport.open();
+        } catch (TTransportException e) {
+            stats.recordConnect(millisSince(start), false);
+            throw e;
+        }
+        stats.recordConnect(millisSince(start), true);
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+        int read = transport.read(buf, off, len);
+        if (awaitingResponse) {
+            stats.recordFirstByte(millisSince(flushNanos));
+            awaitingResponse = false;
+        }
+        if (read > 0) {
+            stats.recordReceived(read, receivedFrames.count(buf, off, read));
+        }
+        return read;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+        transport.write(buf, off, len);
+        unflushedBytes += len;
+        unflushedFrames += sentFrames.count(buf, off, len);
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+        transport.flush();
+        stats.recordSent(unflushedBytes, unflushedFrames);
+        unflushedBytes = 0;
+        unflushedFrames = 0;
+        flushNanos = System.nanoTime();
+        awaitingResponse = true;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
@@ -3,6 +3,7 @@ package com.cnk.communication;
 import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.util.Log;
 
 import com.cnk.communication.task.ExhibitDownloadTask;
 import com.cnk.communication.task.ExperimentDataDownloadTask;
@@ -10,12 +11,18 @@ import com.cnk.communication.task.MapDownloadTask;
 import com.cnk.communication.task.RaportUploadTask;
 import com.cnk.communication.task.ServerTask;
 import com.cnk.communication.task.Task;
-
+import com.cnk.communication.thrift.ExhibitChangesRequest;
+import com.cnk.communication.thrift.ExhibitChangesResponse;
+import com.cnk.data.exhibits.ExhibitsData;
+import com.cnk.data.raports.ReadyRaports;
+import com.cnk.notificators.Observer;
+
+import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
-public class NetworkHandler {
+public class NetworkHandler implements Observer {
 
     public interface SuccessAction {
         void perform(Task sender);
@@ -25,16 +32,52 @@ public class NetworkHandler {
         void perform(Task sender, ServerTask.FailureReason reason);
     }
 
+    private static class ExhibitsSyncProbe implements SyncScheduler.Probe {
+        @Override
+        public Object snapshot() {
+            return ExhibitsData.getInstance().getExhibitsVersion();
+        }
+
+        // resync interrupted in the middle
+        @Override
+        public boolean hasPendingWork() {
+            return ExhibitsData.getInstance().isResyncPending();
+        }
+    }
+
+    private static class RaportsSyncProbe implements SyncScheduler.Probe {
+        @Override
+        public Object snapshot() {
+            return ReadyRaports.getInstance().getReadyRaportsCount();
+        }
+
+        @Override
+        public boolean hasPendingWork() {
+            return ReadyRaports.getInstance().getReadyRaportsCount() > 0;
+        }
+    }
+
     private static final String LOG_TAG = "NetworkHandler";
-    private static final long SECONDS_DELAY = 30;
+    private static final String EXHIBITS_SYNC = "exhibits";
+    private static final String RAPORTS_SYNC = "raports";
+    private static final String EXPERIMENT_DOWNLOAD = "experiment";
+    private static final String MAP_DOWNLOAD = "map";
     private static NetworkHandler instance;
 
     private ScheduledExecutorService scheduledExecutor;
+    private TaskScheduler taskScheduler;
+    private InFlightTasks inFlightTasks;
+    private SyncScheduler syncScheduler;
+    private ConnectivityMonitor connectivityMonitor;
+    private AsyncServerClient asyncClient;
     private boolean bgSyncStarted = false;
     private Context appContext;
 
     private NetworkHandler() {
         scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        taskScheduler = new TaskScheduler();
+        inFlightTasks = new InFlightTasks(taskScheduler);
+        syncScheduler = new SyncScheduler(scheduledExecutor, taskScheduler);
     }
 
     public static NetworkHandler getInstance() {
@@ -46,9 +89,17 @@ public class NetworkHandler {
 
     public void setAppContext(Context appContext) {
         this.appContext = appContext;
+        connectivityMonitor = new ConnectivityMonitor(appContext, this::onWifiStateChange);
+        connectivityMonitor.start();
+        if (!connectivityMonitor.isWifiConnected()) {
+            syncScheduler.pause();
+        }
     }
 
     public boolean isConnectedToWifi() {
+        if (connectivityMonitor != null) {
+            return connectivityMonitor.isWifiConnected();
+        }
         ConnectivityManager connManager =
                 (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
         NetworkInfo mWifi = connManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
@@ -56,14 +107,50 @@ public class NetworkHandler {
         return mWifi.isConnected();
     }
 
-    public synchronized void downloadExperimentData(SuccessAction success, FailureAction failure) {
-        Task task = new ExperimentDataDownloadTask(success, failure);
-        scheduledExecutor.schedule(task::run, 0, TimeUnit.SECONDS);
+    // for running several calls at once without a thread per call
+    public synchronized AsyncServerClient getAsyncClient() throws IOException {
+        Endpoint endpoint = ConnectionPool.getInstance().getEndpoint();
+        if (asyncClient != null && asyncClient.getEndpoint() != endpoint) {
+            asyncClient.close();
+            asyncClient = null;
+        }
+        if (asyncClient == null) {
+            asyncClient = new AsyncServerClient(endpoint);
+        }
+        return asyncClient;
+    }
+
+    /*
+        Asks the server for the first exhibit change after the saved version and brings
+        exhibits sync forward when there is one. Opening the socket resolves the server
+        address, so it's done by an interactive worker, which is free again once the call
+        is sent. Async client can't compress, with zlib exhibits are synced on schedule.
+     */
+    public void checkExhibitChanges() {
+        if (!bgSyncStarted || ExhibitsData.getInstance().isResyncPending()) {
+            return;
+        }
+        Endpoint endpoint = ConnectionPool.getInstance().getEndpoint();
+        if (endpoint.getWireFormat().getCompression() != WireFormat.Compression.NONE) {
+            return;
+        }
+        taskScheduler.submit(TaskScheduler.Lane.INTERACTIVE, this::startExhibitChangesCheck);
+    }
+
+    public TaskHandle downloadExperimentData(SuccessAction success, FailureAction failure) {
+        return inFlightTasks.submit(EXPERIMENT_DOWNLOAD,
+                                    TaskScheduler.Lane.INTERACTIVE,
+                                    ExperimentDataDownloadTask::new,
+                                    success,
+                                    failure);
     }
 
-    public synchronized void downloadMap(SuccessAction success, FailureAction failure) {
-        Task task = new MapDownloadTask(success, failure);
-        scheduledExecutor.schedule(task::run, 0, TimeUnit.SECONDS);
+    public TaskHandle downloadMap(SuccessAction success, FailureAction failure) {
+        return inFlightTasks.submit(MAP_DOWNLOAD,
+                                    TaskScheduler.Lane.BULK,
+                                    MapDownloadTask::new,
+                                    success,
+                                    failure);
     }
 
     public synchronized void startBgDataSync() {
@@ -72,15 +159,72 @@ public class NetworkHandler {
         }
         bgSyncStarted = true;
 
-        Task exhibitsTask = new ExhibitDownloadTask(null, null);
-        Task raportsTask = new RaportUploadTask(null, null);
-        scheduledExecutor.scheduleWithFixedDelay(exhibitsTask::run,
-                                                 SECONDS_DELAY,
-                                                 SECONDS_DELAY,
-                                                 TimeUnit.SECONDS);
-        scheduledExecutor.scheduleWithFixedDelay(raportsTask::run,
-                                                 SECONDS_DELAY,
-                                                 SECONDS_DELAY,
-                                                 TimeUnit.SECONDS);
+        syncScheduler.addJob(EXHIBITS_SYNC,
+                             TaskScheduler.Lane.BULK,
+                             ExhibitDownloadTask::new,
+                             new ExhibitsSyncProbe());
+        syncScheduler.addJob(RAPORTS_SYNC,
+                             TaskScheduler.Lane.UPLOAD,
+                             RaportUploadTask::new,
+                             new RaportsSyncProbe());
+        ReadyRaports.getInstance().addObserver(this, this::onRaportsQueueChange);
+    }
+
+    public List<SyncScheduler.JobState> getSyncState() {
+        return syncScheduler.getState();
+    }
+
+    public List<TaskScheduler.LaneStats> getLaneStats() {
+        return taskScheduler.getStats();
+    }
+
+    private void onWifiStateChange(boolean connected) {
+        if (connected) {
+            syncScheduler.resume();
+        } else {
+            syncScheduler.pause();
+            // sockets opened over the lost network are useless now
+            ConnectionPool.getInstance().closeAll();
+        }
+    }
+
+    private void onRaportsQueueChange(int raportsQueueSize) {
+        if (raportsQueueSize > 0) {
+            syncScheduler.runSoon(RAPORTS_SYNC);
+        }
+    }
+
+    private void startExhibitChangesCheck() {
+        ExhibitsData exhibits = ExhibitsData.getInstance();
+        if (!isConnectedToWifi()) {
+            return;
+        }
+        ExhibitChangesRequest request = new ExhibitChangesRequest();
+        request.setPageSize(1);
+        if (exhibits.getExhibitsVersion() != null) {
+            request.setAfterVersion(exhibits.getExhibitsVersion());
+        }
+        RpcFuture<ExhibitChangesResponse> probe;
+        try {
+            probe = getAsyncClient().getExhibitChanges(request);
+        } catch (IOException | RuntimeException e) {
+            Log.e(LOG_TAG, "Exhibit changes check failed: " + e.toString());
+            return;
+        }
+        probe.addCallback(new RpcFuture.Callback<ExhibitChangesResponse>() {
+            @Override
+            public void onSuccess(ExhibitChangesResponse response) {
+                if (!response.getChanges().isEmpty() || response.isResync()) {
+                    Log.i(LOG_TAG, "Server has new exhibits, syncing soon");
+                    syncScheduler.runSoon(EXHIBITS_SYNC);
+                }
+            }
+
+            // e.g. older server without exhibit changes, exhibits are synced on schedule
+            @Override
+            public void onFailure(Exception e) {
+                Log.i(LOG_TAG, "Exhibit changes check failed: " + e.toString());
+            }
+        });
     }
 }
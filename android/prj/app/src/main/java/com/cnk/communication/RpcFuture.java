@@ -0,0 +1,225 @@
+package com.cnk.communication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/*
+    Result of an asynchronous call, which can be chained with further calls.
+    Callbacks and transformations run on the thread which completes the future
+    (for server calls it's the selector thread of async client), so they should be short.
+ */
+public class RpcFuture<T> {
+
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onFailure(Exception e);
+    }
+
+    public interface Transform<T, R> {
+        R apply(T result) throws Exception;
+    }
+
+    public interface Chain<T, R> {
+        RpcFuture<R> apply(T result) throws Exception;
+    }
+
+    private enum State {
+        PENDING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private State state = State.PENDING;
+    private T result;
+    private Exception exception;
+    private List<Callback<T>> callbacks = new ArrayList<>();
+
+    public static <T> RpcFuture<T> completed(T result) {
+        RpcFuture<T> future = new RpcFuture<>();
+        future.complete(result);
+        return future;
+    }
+
+    public static <T> RpcFuture<T> failed(Exception e) {
+        RpcFuture<T> future = new RpcFuture<>();
+        future.fail(e);
+        return future;
+    }
+
+    // fails as soon as any of the futures fails, results are in order of futures
+    public static <T> RpcFuture<List<T>> all(List<RpcFuture<T>> futures) {
+        RpcFuture<List<T>> all = new RpcFuture<>();
+        if (futures.isEmpty()) {
+            all.complete(new ArrayList<T>());
+            return all;
+        }
+        List<T> results = new ArrayList<>(Collections.<T>nCopies(futures.size(), null));
+        int[] left = {futures.size()};
+        for (int i = 0; i < futures.size(); i++) {
+            int index = i;
+            futures.get(i).addCallback(new Callback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    boolean last;
+                    synchronized (results) {
+                        results.set(index, result);
+                        last = --left[0] == 0;
+                    }
+                    if (last) {
+                        all.complete(results);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    all.fail(e);
+                }
+            });
+        }
+        return all;
+    }
+
+    public boolean complete(T result) {
+        List<Callback<T>> toNotify;
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return false;
+            }
+            this.result = result;
+            state = State.SUCCEEDED;
+            toNotify = takeCallbacks();
+        }
+        for (Callback<T> callback : toNotify) {
+            callback.onSuccess(result);
+        }
+        return true;
+    }
+
+    public boolean fail(Exception e) {
+        List<Callback<T>> toNotify;
+        synchronized (this) {
+            if (state != State.PENDING) {
+                return false;
+            }
+            exception = e;
+            state = State.FAILED;
+            toNotify = takeCallbacks();
+        }
+        for (Callback<T> callback : toNotify) {
+            callback.onFailure(e);
+        }
+        return true;
+    }
+
+    // the call itself isn't interrupted, its result is ignored
+    public boolean cancel() {
+        return fail(new CancellationException());
+    }
+
+    public synchronized boolean isDone() {
+        return state != State.PENDING;
+    }
+
+    public synchronized boolean isCancelled() {
+        return exception instanceof CancellationException;
+    }
+
+    public void addCallback(Callback<T> callback) {
+        synchronized (this) {
+            if (state == State.PENDING) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        if (state == State.SUCCEEDED) {
+            callback.onSuccess(result);
+        } else {
+            callback.onFailure(exception);
+        }
+    }
+
+    public <R> RpcFuture<R> map(Transform<T, R> transform) {
+        RpcFuture<R> mapped = new RpcFuture<>();
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                R transformed;
+                try {
+                    transformed = transform.apply(result);
+                } catch (Exception e) {
+                    mapped.fail(e);
+                    return;
+                }
+                mapped.complete(transformed);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                mapped.fail(e);
+            }
+        });
+        return mapped;
+    }
+
+    public <R> RpcFuture<R> flatMap(Chain<T, R> chain) {
+        RpcFuture<R> chained = new RpcFuture<>();
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                RpcFuture<R> next;
+                try {
+                    next = chain.apply(result);
+                } catch (Exception e) {
+                    chained.fail(e);
+                    return;
+                }
+                next.addCallback(new Callback<R>() {
+                    @Override
+                    public void onSuccess(R nextResult) {
+                        chained.complete(nextResult);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        chained.fail(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                chained.fail(e);
+            }
+        });
+        return chained;
+    }
+
+    public synchronized T get(long timeoutMillis) throws InterruptedException,
+                                                         ExecutionException,
+                                                         TimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (state == State.PENDING) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new TimeoutException();
+            }
+            wait(left);
+        }
+        if (state == State.FAILED) {
+            throw new ExecutionException(exception);
+        }
+        return result;
+    }
+
+    private List<Callback<T>> takeCallbacks() {
+        notifyAll();
+        List<Callback<T>> taken = callbacks;
+        callbacks = new ArrayList<>();
+        return taken;
+    }
+}
@@ -0,0 +1,298 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import com.cnk.communication.task.ServerTask;
+import com.cnk.communication.task.Task;
+import com.cnk.utilities.Consts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Runs background sync jobs with an interval adapted to their outcomes:
+        - failures to reach the server back off exponentially with jitter,
+          so tablets don't hammer a server which is down, all at once
+        - runs which changed nothing make the job run less and less often
+        - pending work (e.g. raports waiting for upload) makes it run more often
+    While paused (e.g. without wifi) jobs aren't run at all, resuming runs them right away.
+ */
+public class SyncScheduler {
+
+    public interface TaskFactory {
+        Task create(NetworkHandler.SuccessAction success, NetworkHandler.FailureAction failure);
+    }
+
+    public interface Probe {
+        // compared before and after a run to find out if the run changed anything
+        Object snapshot();
+
+        boolean hasPendingWork();
+    }
+
+    public enum Outcome {
+        NONE,
+        CHANGED,
+        UNCHANGED,
+        FAILED,
+        SKIPPED
+    }
+
+    public static class JobState {
+        private final String name;
+        private final Outcome lastOutcome;
+        private final ServerTask.FailureReason lastFailure;
+        private final int consecutiveFailures;
+        private final int consecutiveIdleRuns;
+        private final long delayMillis;
+        private final long lastRunMillis;
+        private final long nextRunMillis;
+
+        private JobState(Job job) {
+            this.name = job.name;
+            this.lastOutcome = job.lastOutcome;
+            this.lastFailure = job.lastFailure;
+            this.consecutiveFailures = job.consecutiveFailures;
+            this.consecutiveIdleRuns = job.consecutiveIdleRuns;
+            this.delayMillis = job.delayMillis;
+            this.lastRunMillis = job.lastRunMillis;
+            this.nextRunMillis = job.nextRunMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Outcome getLastOutcome() {
+            return lastOutcome;
+        }
+
+        public ServerTask.FailureReason getLastFailure() {
+            return lastFailure;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public int getConsecutiveIdleRuns() {
+            return consecutiveIdleRuns;
+        }
+
+        public long getDelayMillis() {
+            return delayMillis;
+        }
+
+        public long getLastRunMillis() {
+            return lastRunMillis;
+        }
+
+        public long getNextRunMillis() {
+            return nextRunMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": last " + lastOutcome +
+                   (lastFailure != null ? " (" + lastFailure + ")" : "") +
+                   ", failures " + consecutiveFailures +
+                   ", idle runs " + consecutiveIdleRuns +
+                   ", delay " + delayMillis + " ms";
+        }
+    }
+
+    private class Job {
+        private final String name;
+        private final TaskScheduler.Lane lane;
+        private final TaskFactory factory;
+        private final Probe probe;
+        private Outcome lastOutcome = Outcome.NONE;
+        private ServerTask.FailureReason lastFailure;
+        private int consecutiveFailures;
+        private int consecutiveIdleRuns;
+        private long delayMillis;
+        private long lastRunMillis;
+        private long nextRunMillis;
+        private boolean running;
+        // skipped its run because scheduler was paused
+        private boolean waiting;
+        private ScheduledFuture<?> future;
+
+        private Job(String name, TaskScheduler.Lane lane, TaskFactory factory, Probe probe) {
+            this.name = name;
+            this.lane = lane;
+            this.factory = factory;
+            this.probe = probe;
+        }
+    }
+
+    private static final String LOG_TAG = "SyncScheduler";
+    private static final long BASE_DELAY_MILLIS = 30 * Consts.MILLIS_IN_SEC;
+    private static final long PENDING_WORK_DELAY_MILLIS = 5 * Consts.MILLIS_IN_SEC;
+    private static final long MAX_IDLE_DELAY_MILLIS = 5 * 60 * Consts.MILLIS_IN_SEC;
+    private static final long MAX_BACKOFF_DELAY_MILLIS = 10 * 60 * Consts.MILLIS_IN_SEC;
+    // part of the delay which is randomized
+    private static final double JITTER = 0.2;
+
+    private final ScheduledExecutorService timer;
+    private final TaskScheduler taskScheduler;
+    private final List<Job> jobs;
+    private final Random random;
+    private boolean paused = false;
+
+    // timer only measures delays, jobs are run in their lanes of task scheduler
+    public SyncScheduler(ScheduledExecutorService timer, TaskScheduler taskScheduler) {
+        this.timer = timer;
+        this.taskScheduler = taskScheduler;
+        this.jobs = new ArrayList<>();
+        this.random = new Random();
+    }
+
+    public synchronized void addJob(String name,
+                                    TaskScheduler.Lane lane,
+                                    TaskFactory factory,
+                                    Probe probe) {
+        Job job = new Job(name, lane, factory, probe);
+        jobs.add(job);
+        scheduleIn(job, jitter(BASE_DELAY_MILLIS));
+    }
+
+    // brings the next run of a job forward, e.g. when new work appeared
+    public synchronized void runSoon(String name) {
+        for (Job job : jobs) {
+            if (job.name.equals(name)) {
+                long soon = System.currentTimeMillis() + PENDING_WORK_DELAY_MILLIS;
+                if (!paused && !job.running && job.nextRunMillis > soon &&
+                    job.future.cancel(false)) {
+                    scheduleIn(job, PENDING_WORK_DELAY_MILLIS);
+                }
+            }
+        }
+    }
+
+    public synchronized void pause() {
+        Log.i(LOG_TAG, "Pausing");
+        paused = true;
+    }
+
+    // failures and idle runs from before the pause are forgotten, they were most likely caused by it
+    public synchronized void resume() {
+        if (!paused) {
+            return;
+        }
+        Log.i(LOG_TAG, "Resuming");
+        paused = false;
+        for (Job job : jobs) {
+            job.consecutiveFailures = 0;
+            job.consecutiveIdleRuns = 0;
+            if (job.running || (!job.waiting && !job.future.cancel(false))) {
+                continue;
+            }
+            job.waiting = false;
+            scheduleIn(job, job.probe.hasPendingWork() ? 0 : jitter(PENDING_WORK_DELAY_MILLIS));
+        }
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public synchronized List<JobState> getState() {
+        List<JobState> state = new ArrayList<>();
+        for (Job job : jobs) {
+            state.add(new JobState(job));
+        }
+        return state;
+    }
+
+    private void scheduleIn(Job job, long delayMillis) {
+        job.delayMillis = delayMillis;
+        job.nextRunMillis = System.currentTimeMillis() + delayMillis;
+        job.future = timer.schedule(() -> taskScheduler.submit(job.lane, () -> run(job)),
+                                    delayMillis,
+                                    TimeUnit.MILLISECONDS);
+    }
+
+    private void run(Job job) {
+        synchronized (this) {
+            if (paused) {
+                Log.i(LOG_TAG, "Paused, skipping " + job.name);
+                job.waiting = true;
+                return;
+            }
+            job.running = true;
+        }
+        final Outcome[] outcome = {Outcome.NONE};
+        final ServerTask.FailureReason[] failure = {null};
+        Object before = job.probe.snapshot();
+        Task task = job.factory.create((sender) -> {
+            // failure may be reported before success, e.g. when there is no experiment
+            if (outcome[0] == Outcome.NONE) {
+                Object after = job.probe.snapshot();
+                boolean unchanged = before == null ? after == null : before.equals(after);
+                outcome[0] = unchanged ? Outcome.UNCHANGED : Outcome.CHANGED;
+            }
+        }, (sender, reason) -> {
+            failure[0] = reason;
+            outcome[0] = isServerFailure(reason) ? Outcome.FAILED : Outcome.SKIPPED;
+        });
+
+        try {
+            task.run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            outcome[0] = Outcome.FAILED;
+        }
+
+        synchronized (this) {
+            job.running = false;
+            job.lastRunMillis = System.currentTimeMillis();
+            job.lastOutcome = outcome[0];
+            job.lastFailure = failure[0];
+            scheduleIn(job, nextDelay(job, outcome[0]));
+            Log.i(LOG_TAG, new JobState(job).toString());
+        }
+    }
+
+    private long nextDelay(Job job, Outcome outcome) {
+        if (outcome == Outcome.FAILED) {
+            job.consecutiveFailures++;
+            job.consecutiveIdleRuns = 0;
+            return jitter(grow(BASE_DELAY_MILLIS, job.consecutiveFailures, MAX_BACKOFF_DELAY_MILLIS));
+        }
+        job.consecutiveFailures = 0;
+
+        if (outcome == Outcome.UNCHANGED || outcome == Outcome.SKIPPED) {
+            job.consecutiveIdleRuns++;
+        } else {
+            job.consecutiveIdleRuns = 0;
+        }
+        if (job.probe.hasPendingWork()) {
+            return jitter(PENDING_WORK_DELAY_MILLIS);
+        }
+        return jitter(grow(BASE_DELAY_MILLIS, job.consecutiveIdleRuns, MAX_IDLE_DELAY_MILLIS));
+    }
+
+    private static boolean isServerFailure(ServerTask.FailureReason reason) {
+        return reason == ServerTask.FailureReason.SOCKET_OPEN_FAILED ||
+               reason == ServerTask.FailureReason.ACTION_FAILED ||
+               reason == ServerTask.FailureReason.DEADLINE_EXCEEDED;
+    }
+
+    private static long grow(long base, int times, long max) {
+        long delay = base;
+        for (int i = 0; i < times && delay < max; i++) {
+            delay *= 2;
+        }
+        return Math.min(delay, max);
+    }
+
+    private synchronized long jitter(long delayMillis) {
+        long randomPart = (long) (delayMillis * JITTER);
+        return delayMillis - randomPart + (long) (random.nextDouble() * 2 * randomPart);
+    }
+}
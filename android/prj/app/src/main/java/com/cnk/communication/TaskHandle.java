@@ -0,0 +1,85 @@
+package com.cnk.communication;
+
+import com.cnk.communication.task.ServerTask;
+import com.cnk.communication.task.Task;
+
+/*
+    Given to a caller of a network operation. Many handles may share one task
+    in flight, cancelling a handle only drops its callbacks; the task itself is
+    dropped when all of its handles are cancelled before it starts, or cancelled
+    when they are cancelled while it runs.
+ */
+public class TaskHandle {
+
+    private enum State {
+        WAITING,
+        DONE,
+        CANCELLED
+    }
+
+    private final InFlightTasks.Flight flight;
+    private final NetworkHandler.SuccessAction success;
+    private final NetworkHandler.FailureAction failure;
+    private State state = State.WAITING;
+
+    TaskHandle(InFlightTasks.Flight flight,
+               NetworkHandler.SuccessAction success,
+               NetworkHandler.FailureAction failure) {
+        this.flight = flight;
+        this.success = success;
+        this.failure = failure;
+    }
+
+    // returns false if the task already finished
+    public boolean cancel() {
+        synchronized (this) {
+            if (state != State.WAITING) {
+                return state == State.CANCELLED;
+            }
+            state = State.CANCELLED;
+            notifyAll();
+        }
+        flight.detach(this);
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return state == State.CANCELLED;
+    }
+
+    public synchronized boolean isDone() {
+        return state != State.WAITING;
+    }
+
+    // returns false if the task hasn't finished in the given time
+    public synchronized boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (state == State.WAITING) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return false;
+            }
+            wait(left);
+        }
+        return true;
+    }
+
+    void notifySuccess(Task sender) {
+        if (!isCancelled() && success != null) {
+            success.perform(sender);
+        }
+    }
+
+    void notifyFailure(Task sender, ServerTask.FailureReason reason) {
+        if (!isCancelled() && failure != null) {
+            failure.perform(sender, reason);
+        }
+    }
+
+    synchronized void finish() {
+        if (state == State.WAITING) {
+            state = State.DONE;
+            notifyAll();
+        }
+    }
+}
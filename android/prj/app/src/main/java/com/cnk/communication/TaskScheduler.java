@@ -0,0 +1,183 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+    Runs network tasks in lanes, so a long map download doesn't hold back
+    raport uploads or data a surveyor is waiting for.
+    Each lane has its own queue and concurrency limit, all of them share a limit of
+    worker threads. Free worker takes a task from the most important lane which
+    has some queued, so interactive tasks go before any queued bulk work.
+    Running tasks can't be preempted, so other lanes never take the workers reserved
+    for interactive ones and a surveyor doesn't wait for a map download to finish.
+ */
+public class TaskScheduler {
+
+    // in order of importance
+    public enum Lane {
+        INTERACTIVE(2),
+        UPLOAD(1),
+        BULK(2);
+
+        private final int maxRunning;
+
+        Lane(int maxRunning) {
+            this.maxRunning = maxRunning;
+        }
+    }
+
+    public static class LaneStats {
+        private final Lane lane;
+        private final int queued;
+        private final int running;
+        private final long started;
+        private final long averageWaitMillis;
+        private final long maxWaitMillis;
+
+        private LaneStats(Lane lane, LaneState state) {
+            this.lane = lane;
+            this.queued = state.queue.size();
+            this.running = state.running;
+            this.started = state.started;
+            this.averageWaitMillis = state.started > 0 ? state.totalWaitMillis / state.started : 0;
+            this.maxWaitMillis = state.maxWaitMillis;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getRunning() {
+            return running;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getAverageWaitMillis() {
+            return averageWaitMillis;
+        }
+
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return lane + ": queued " + queued + ", running " + running + ", started " + started +
+                   ", wait avg " + averageWaitMillis + " ms, max " + maxWaitMillis + " ms";
+        }
+    }
+
+    private static class QueuedTask {
+        private final Runnable runnable;
+        private final long enqueuedMillis;
+
+        private QueuedTask(Runnable runnable) {
+            this.runnable = runnable;
+            this.enqueuedMillis = System.currentTimeMillis();
+        }
+    }
+
+    private static class LaneState {
+        private final Deque<QueuedTask> queue = new ArrayDeque<>();
+        private int running;
+        private long started;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+    }
+
+    private static final String LOG_TAG = "TaskScheduler";
+    private static final int MAX_WORKERS = 3;
+    private static final int INTERACTIVE_RESERVED_WORKERS = 1;
+
+    private final Map<Lane, LaneState> lanes;
+    private final ExecutorService workers;
+    private int running = 0;
+
+    public TaskScheduler() {
+        lanes = new EnumMap<>(Lane.class);
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneState());
+        }
+        // number of threads is limited by dispatch
+        workers = Executors.newCachedThreadPool();
+    }
+
+    public synchronized void submit(Lane lane, Runnable runnable) {
+        lanes.get(lane).queue.add(new QueuedTask(runnable));
+        dispatch();
+    }
+
+    public synchronized List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>();
+        for (Map.Entry<Lane, LaneState> entry : lanes.entrySet()) {
+            stats.add(new LaneStats(entry.getKey(), entry.getValue()));
+        }
+        return stats;
+    }
+
+    private void dispatch() {
+        while (running < MAX_WORKERS) {
+            Lane lane = nextLane();
+            if (lane == null) {
+                return;
+            }
+            LaneState state = lanes.get(lane);
+            QueuedTask task = state.queue.poll();
+            long waitMillis = System.currentTimeMillis() - task.enqueuedMillis;
+            state.running++;
+            state.started++;
+            state.totalWaitMillis += waitMillis;
+            state.maxWaitMillis = Math.max(state.maxWaitMillis, waitMillis);
+            running++;
+            workers.execute(() -> runTask(lane, task));
+        }
+    }
+
+    private Lane nextLane() {
+        int backgroundRunning = running - lanes.get(Lane.INTERACTIVE).running;
+        for (Map.Entry<Lane, LaneState> entry : lanes.entrySet()) {
+            Lane lane = entry.getKey();
+            LaneState state = entry.getValue();
+            if (state.queue.isEmpty() || state.running >= lane.maxRunning) {
+                continue;
+            }
+            if (lane != Lane.INTERACTIVE &&
+                backgroundRunning >= MAX_WORKERS - INTERACTIVE_RESERVED_WORKERS) {
+                continue;
+            }
+            return lane;
+        }
+        return null;
+    }
+
+    private void runTask(Lane lane, QueuedTask task) {
+        try {
+            task.runnable.run();
+        } catch (Exception e) {
+            Log.e(LOG_TAG, "Task in lane " + lane + " threw: " + e.toString());
+            e.printStackTrace();
+        } finally {
+            synchronized (this) {
+                lanes.get(lane).running--;
+                running--;
+                dispatch();
+            }
+        }
+    }
+}
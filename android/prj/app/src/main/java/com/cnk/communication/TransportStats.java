@@ -0,0 +1,220 @@
+package com.cnk.communication;
+
+import android.util.Log;
+
+import com.cnk.communication.task.ServerTask;
+import com.cnk.utilities.Consts;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    What happens on the wire in sessions with the server: connecting, calls,
+    transferred bytes and frames, task failures. Filled by instrumented transports
+    and protocols of pooled connections, can be dumped to a file when diagnosing sync.
+ */
+public class TransportStats {
+
+    public static class Timing {
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        private Timing() {
+        }
+
+        private Timing(Timing other) {
+            this.count = other.count;
+            this.totalMillis = other.totalMillis;
+            this.maxMillis = other.maxMillis;
+        }
+
+        private void add(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getAverageMillis() {
+            return count > 0 ? totalMillis / count : 0;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return count + " x, avg " + getAverageMillis() + " ms, max " + maxMillis + " ms";
+        }
+    }
+
+    private static final String LOG_TAG = "TransportStats";
+    private static final String STATS_DIRECTORY = "stats/";
+    private static TransportStats instance;
+
+    private Timing connects;
+    private long connectFailures;
+    // time from sending a request to first byte of the response
+    private Timing firstByte;
+    private Map<String, Timing> calls;
+    private long bytesSent;
+    private long bytesReceived;
+    private long framesSent;
+    private long framesReceived;
+    private Map<ServerTask.FailureReason, Long> failures;
+    private long sinceMillis;
+
+    private TransportStats() {
+        reset();
+    }
+
+    public static synchronized TransportStats getInstance() {
+        if (instance == null) {
+            instance = new TransportStats();
+        }
+        return instance;
+    }
+
+    public synchronized void reset() {
+        connects = new Timing();
+        firstByte = new Timing();
+        calls = new TreeMap<>();
+        failures = new EnumMap<>(ServerTask.FailureReason.class);
+        connectFailures = 0;
+        bytesSent = 0;
+        bytesReceived = 0;
+        framesSent = 0;
+        framesReceived = 0;
+        sinceMillis = System.currentTimeMillis();
+    }
+
+    public synchronized void recordConnect(long millis, boolean succeeded) {
+        if (succeeded) {
+            connects.add(millis);
+        } else {
+            connectFailures++;
+        }
+    }
+
+    public synchronized void recordFirstByte(long millis) {
+        firstByte.add(millis);
+    }
+
+    public synchronized void recordCall(String name, long millis) {
+        Timing timing = calls.get(name);
+        if (timing == null) {
+            timing = new Timing();
+            calls.put(name, timing);
+        }
+        timing.add(millis);
+    }
+
+    public synchronized void recordSent(long bytes, long frames) {
+        bytesSent += bytes;
+        framesSent += frames;
+    }
+
+    public synchronized void recordReceived(long bytes, long frames) {
+        bytesReceived += bytes;
+        framesReceived += frames;
+    }
+
+    public synchronized void recordFailure(ServerTask.FailureReason reason) {
+        Long count = failures.get(reason);
+        failures.put(reason, count == null ? 1 : count + 1);
+    }
+
+    public synchronized Timing getConnects() {
+        return new Timing(connects);
+    }
+
+    public synchronized long getConnectFailures() {
+        return connectFailures;
+    }
+
+    public synchronized Timing getFirstByte() {
+        return new Timing(firstByte);
+    }
+
+    public synchronized Map<String, Timing> getCalls() {
+        Map<String, Timing> copy = new TreeMap<>();
+        for (Map.Entry<String, Timing> entry : calls.entrySet()) {
+            copy.put(entry.getKey(), new Timing(entry.getValue()));
+        }
+        return copy;
+    }
+
+    public synchronized long getBytesSent() {
+        return bytesSent;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public synchronized long getFramesSent() {
+        return framesSent;
+    }
+
+    public synchronized long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public synchronized Map<ServerTask.FailureReason, Long> getFailures() {
+        return new EnumMap<>(failures);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("since: ").append(formatDate(sinceMillis)).append('\n');
+        builder.append("connects: ").append(connects)
+               .append(", failed ").append(connectFailures).append('\n');
+        builder.append("first byte: ").append(firstByte).append('\n');
+        builder.append("sent: ").append(bytesSent).append(" B in ")
+               .append(framesSent).append(" frames\n");
+        builder.append("received: ").append(bytesReceived).append(" B in ")
+               .append(framesReceived).append(" frames\n");
+        for (Map.Entry<String, Timing> entry : calls.entrySet()) {
+            builder.append("call ").append(entry.getKey()).append(": ")
+                   .append(entry.getValue()).append('\n');
+        }
+        for (Map.Entry<ServerTask.FailureReason, Long> entry : failures.entrySet()) {
+            builder.append("failure ").append(entry.getKey()).append(": ")
+                   .append(entry.getValue()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    public File dumpToFile() throws IOException {
+        File file = new File(Consts.DATA_PATH + STATS_DIRECTORY + "transport_" +
+                             formatDate(System.currentTimeMillis()) + ".txt");
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(toString());
+        } finally {
+            writer.close();
+        }
+        Log.i(LOG_TAG, "Stats dumped to " + file.getPath());
+        return file;
+    }
+
+    private static String formatDate(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss", Locale.US).format(new Date(millis));
+    }
+}
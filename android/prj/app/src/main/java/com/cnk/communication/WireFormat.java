@@ -0,0 +1,85 @@
+package com.cnk.communication;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TZlibTransport;
+
+import java.util.Locale;
+
+/*
+    Protocol and compression used on top of the framed transport.
+    Has to match server configuration (protocol and compression options),
+    the app reads it from res/values/server.xml.
+ */
+public class WireFormat {
+
+    public enum Protocol {
+        BINARY,
+        COMPACT
+    }
+
+    public enum Compression {
+        NONE,
+        ZLIB
+    }
+
+    public static final WireFormat DEFAULT = new WireFormat(Protocol.BINARY, Compression.NONE);
+
+    private final Protocol protocol;
+    private final Compression compression;
+
+    public WireFormat(Protocol protocol, Compression compression) {
+        this.protocol = protocol;
+        this.compression = compression;
+    }
+
+    // names as in server config, e.g. "compact" and "zlib"
+    public static WireFormat parse(String protocol, String compression) {
+        return new WireFormat(Protocol.valueOf(protocol.trim().toUpperCase(Locale.US)),
+                              Compression.valueOf(compression.trim().toUpperCase(Locale.US)));
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    // framed is expected to be TFramedTransport, compression is applied per frame content
+    public TTransport wrap(TTransport framed) {
+        switch (compression) {
+            case ZLIB:
+                return new TZlibTransport(framed);
+            default:
+                return framed;
+        }
+    }
+
+    public TProtocol createProtocol(TTransport transport) {
+        switch (protocol) {
+            case COMPACT:
+                return new TCompactProtocol(transport);
+            default:
+                return new TBinaryProtocol(transport);
+        }
+    }
+
+    public TProtocolFactory createProtocolFactory() {
+        switch (protocol) {
+            case COMPACT:
+                return new TCompactProtocol.Factory();
+            default:
+                return new TBinaryProtocol.Factory();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return protocol + "/" + compression;
+    }
+}
@@ -4,11 +4,15 @@ import android.util.Log;
 
 import com.cnk.communication.NetworkHandler;
 import com.cnk.communication.thrift.Exhibit;
+import com.cnk.communication.thrift.ExhibitChange;
+import com.cnk.communication.thrift.ExhibitChangesRequest;
+import com.cnk.communication.thrift.ExhibitChangesResponse;
 import com.cnk.communication.thrift.NewExhibitsRequest;
 import com.cnk.communication.thrift.NewExhibitsResponse;
 import com.cnk.communication.thrift.Server;
 import com.cnk.data.exhibits.ExhibitsData;
 
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TException;
 
 import java.util.ArrayList;
@@ -18,32 +22,103 @@ import java.util.Map;
 public class ExhibitDownloadTask extends ServerTask {
 
     private static final String LOG_TAG = "ExhibitDownloadTask";
+    private static final int PAGE_SIZE = 100;
+    // set when server can't send changes in pages, checked again after application restart
+    private static volatile boolean changesUnsupported = false;
+    // interrupted sync continues from the last applied page
+    private static final long DEADLINE_SECONDS = 20;
 
     public ExhibitDownloadTask(NetworkHandler.SuccessAction success,
                                NetworkHandler.FailureAction failure) {
-        super(success, failure);
+        super(success, failure, DEADLINE_SECONDS);
     }
 
     protected void performInSession(Server.Client client) throws TException {
         Log.i(LOG_TAG, "Downloading exhibits");
+        if (changesUnsupported) {
+            downloadAllChanged(client);
+        } else {
+            try {
+                downloadChanges(client);
+            } catch (TApplicationException e) {
+                if (e.getType() != TApplicationException.UNKNOWN_METHOD) {
+                    throw e;
+                }
+                Log.i(LOG_TAG, "Server doesn't support exhibit changes, downloading all changed");
+                changesUnsupported = true;
+                downloadAllChanged(client);
+            }
+        }
+        Log.i(LOG_TAG, "Exhibits downloaded");
+    }
+
+    private void downloadChanges(Server.Client client) throws TException {
+        ExhibitsData data = ExhibitsData.getInstance();
+        boolean resync = data.isResyncPending();
+        Integer cursor = resync ? data.getResyncCursor() : data.getExhibitsVersion();
+        ExhibitChangesResponse response;
+        do {
+            ExhibitChangesRequest request = new ExhibitChangesRequest();
+            request.setPageSize(PAGE_SIZE);
+            if (cursor != null) {
+                request.setAfterVersion(cursor);
+            }
+            if (resync) {
+                request.setResync(true);
+            }
+            response = client.getExhibitChanges(request);
+            applyPage(response);
+            resync = response.isResync();
+            cursor = response.getCursor();
+        } while (response.isHasMore());
+    }
+
+    private void applyPage(ExhibitChangesResponse response) {
+        List<com.cnk.database.models.Exhibit> changed = new ArrayList<>();
+        List<Integer> removed = new ArrayList<>();
+        for (ExhibitChange change : response.getChanges()) {
+            if (change.isSetExhibit()) {
+                changed.add(new com.cnk.database.models.Exhibit(change.getExhibitId(),
+                                                                change.getExhibit()));
+            } else {
+                removed.add(change.getExhibitId());
+            }
+        }
+
+        boolean resyncInProgress = response.isResync();
+        if (response.isSetExistingExhibitIds()) {
+            removed.addAll(ExhibitsData.getInstance()
+                                       .getExhibitIdsNotIn(response.getExistingExhibitIds()));
+            resyncInProgress = false;
+        }
+        Log.i(LOG_TAG, "Applying " + changed.size() + " changed and " + removed.size() +
+                       " removed exhibits, cursor " + response.getCursor());
+        ExhibitsData.getInstance()
+                    .applyChanges(changed, removed, response.getCursor(), resyncInProgress);
+    }
+
+    private void downloadAllChanged(Server.Client client) throws TException {
         NewExhibitsRequest request = new NewExhibitsRequest();
         Integer version = ExhibitsData.getInstance().getExhibitsVersion();
-        if (version != null) {
+        if (version != null && !ExhibitsData.getInstance().isResyncPending()) {
             request.setAcquiredVersion(version);
         }
         NewExhibitsResponse response = client.getNewExhibits(request);
         updateExhibitsData(response);
-        Log.i(LOG_TAG, "Exhibits downloaded");
     }
 
     private void updateExhibitsData(NewExhibitsResponse response) {
-        Integer version = response.getVersion();
         Map<Integer, Exhibit> exhibits = response.getExhibits();
 
         List<com.cnk.database.models.Exhibit> dbExhibits = new ArrayList<>();
         for (Map.Entry<Integer, Exhibit> entry : exhibits.entrySet()) {
             dbExhibits.add(new com.cnk.database.models.Exhibit(entry.getKey(), entry.getValue()));
         }
-        ExhibitsData.getInstance().setExhibits(dbExhibits, version, response.isFullRefresh());
+        // full refresh lists all exhibits, only the ones missing in it are removed
+        List<Integer> removed = new ArrayList<>();
+        if (response.isFullRefresh()) {
+            removed = ExhibitsData.getInstance().getExhibitIdsNotIn(exhibits.keySet());
+        }
+        ExhibitsData.getInstance().applyChanges(dbExhibits, removed, response.getVersion(), false);
     }
 }
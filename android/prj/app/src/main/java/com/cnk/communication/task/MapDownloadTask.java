@@ -22,10 +22,12 @@ import java.util.Map;
 public class MapDownloadTask extends ServerTask {
 
     private static final String LOG_TAG = "MapDownloadTask";
+    // includes downloading all tiles
+    private static final long DEADLINE_SECONDS = 10 * 60;
 
     public MapDownloadTask(NetworkHandler.SuccessAction success,
                            NetworkHandler.FailureAction failure) {
-        super(success, failure);
+        super(success, failure, DEADLINE_SECONDS);
     }
 
     public void performInSession(Server.Client client) throws TException, IOException {
@@ -43,7 +45,7 @@ public class MapDownloadTask extends ServerTask {
         for (Map.Entry<Integer, MapImage> e : response.entrySet()) {
             maps.add(translateFromThrift(e.getKey(), e.getValue()));
         }
-        MapData.getInstance().setMaps(maps);
+        MapData.getInstance().setMaps(maps, getDeadline());
     }
 
     private FloorMap translateFromThrift(Integer floor, MapImage thriftResponse) {
@@ -59,7 +61,11 @@ public class MapDownloadTask extends ServerTask {
             Resolution tileSize =
                     new Resolution(tile.getTileSize().getWidth(), tile.getTileSize().getHeight());
             List<List<String>> toCopy = tile.getTilesUrls();
-            ZoomLevel toAdd = new ZoomLevel(scaledSize, tileSize, copyThriftList(toCopy));
+            ArrayList<ArrayList<String>> hashes =
+                    tile.isSetTilesHashes() ? copyThriftList(tile.getTilesHashes()) : null;
+            String packUrl = tile.isSetPackUrl() ? tile.getPackUrl() : null;
+            ZoomLevel toAdd =
+                    new ZoomLevel(scaledSize, tileSize, copyThriftList(toCopy), hashes, packUrl);
             zoomLevels.add(toAdd);
         }
 
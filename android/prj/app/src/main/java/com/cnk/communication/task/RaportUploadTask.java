@@ -3,6 +3,7 @@ package com.cnk.communication.task;
 import android.util.Log;
 
 import com.cnk.communication.NetworkHandler;
+import com.cnk.communication.thrift.InvalidData;
 import com.cnk.communication.thrift.MultipleChoiceQuestionAnswer;
 import com.cnk.communication.thrift.RawReport;
 import com.cnk.communication.thrift.RawReportEvent;
@@ -16,12 +17,14 @@ import com.cnk.data.raports.RaportEvent;
 import com.cnk.data.raports.ReadyRaports;
 import com.cnk.data.raports.Timestamp;
 
+import org.apache.thrift.TApplicationException;
 import org.apache.thrift.TException;
 
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -29,36 +32,154 @@ import java.util.Map;
 public class RaportUploadTask extends ServerTask {
 
     private static final String LOG_TAG = "RaportUploadTask";
+    private static final int MAX_RAPORTS_IN_BATCH = 20;
+    private static final int MAX_EVENTS_IN_BATCH = 1000;
+    // set when server doesn't know batch calls, checked again after application restart
+    private static volatile boolean batchUploadUnsupported = false;
+    private static final long DEADLINE_SECONDS = 60;
+
+    private boolean batchUpload;
 
     public RaportUploadTask(NetworkHandler.SuccessAction success,
                             NetworkHandler.FailureAction failure) {
-        super(success, failure);
+        this(success, failure, true);
+    }
+
+    public RaportUploadTask(NetworkHandler.SuccessAction success,
+                            NetworkHandler.FailureAction failure,
+                            boolean batchUpload) {
+        super(success, failure, DEADLINE_SECONDS);
+        this.batchUpload = batchUpload;
     }
 
     @Override
     protected void performInSession(Server.Client client) throws TException {
         Map<Raport, Integer> toSend = ReadyRaports.getInstance().getAllReadyRaports();
+        if (batchUpload && !batchUploadUnsupported) {
+            sendInBatches(client, toSend);
+        } else {
+            sendOneByOne(client, toSend);
+        }
+    }
+
+    private void sendOneByOne(Server.Client client, Map<Raport, Integer> toSend) throws TException {
         for (Map.Entry<Raport, Integer> entry : toSend.entrySet()) {
             Raport raport = entry.getKey();
             Integer serverId = entry.getValue();
-            if (serverId == null) {
+            if (serverId == null && raport.getClientId() == null) {
                 serverId = client.getIdForNewReport();
                 ReadyRaports.getInstance().setServerId(raport, serverId);
             }
             Log.i(LOG_TAG, "Sending raport with id " + raport.getId().toString());
             RawReport thriftRaport = translateToThrift(raport, serverId);
-            client.saveReport(thriftRaport);
+            try {
+                client.saveReport(thriftRaport);
+            } catch (InvalidData e) {
+                // sending it again would fail the same way and stop every later raport
+                Log.e(LOG_TAG, "Raport with id " + raport.getId().toString() +
+                               " rejected by server, not sending it again");
+                ReadyRaports.getInstance().markRaportAsRejected(raport);
+                continue;
+            }
             Log.i(LOG_TAG, "Raport sent");
             ReadyRaports.getInstance().markRaportAsSent(raport);
         }
     }
 
+    private void sendInBatches(Server.Client client, Map<Raport, Integer> toSend) throws TException {
+        List<Raport> batch = new ArrayList<>();
+        int eventsInBatch = 0;
+        for (Raport raport : toSend.keySet()) {
+            int events = raport.getHistory().size();
+            if (!batch.isEmpty() && (batch.size() == MAX_RAPORTS_IN_BATCH ||
+                                     eventsInBatch + events > MAX_EVENTS_IN_BATCH)) {
+                if (!sendBatch(client, batch, toSend)) {
+                    return;
+                }
+                batch.clear();
+                eventsInBatch = 0;
+            }
+            batch.add(raport);
+            eventsInBatch += events;
+        }
+        if (!batch.isEmpty()) {
+            sendBatch(client, batch, toSend);
+        }
+    }
+
+    // returns false if server doesn't support batch calls, remaining raports are then sent one by one
+    private boolean sendBatch(Server.Client client,
+                              List<Raport> batch,
+                              Map<Raport, Integer> toSend) throws TException {
+        try {
+            assignServerIds(client, batch, toSend);
+            List<RawReport> thriftRaports = new ArrayList<>();
+            for (Raport raport : batch) {
+                thriftRaports.add(translateToThrift(raport, toSend.get(raport)));
+            }
+            Log.i(LOG_TAG, "Sending batch of " + batch.size() + " raports");
+            client.saveReports(thriftRaports);
+            Log.i(LOG_TAG, "Batch sent");
+            ReadyRaports.getInstance().markRaportsAsSent(batch);
+            return true;
+        } catch (InvalidData e) {
+            // whole batch is rejected because of one raport, let valid ones through
+            Log.e(LOG_TAG, "Batch rejected, sending its raports one by one");
+            sendOneByOne(client, subMap(toSend, batch));
+            return true;
+        } catch (TApplicationException e) {
+            if (e.getType() != TApplicationException.UNKNOWN_METHOD) {
+                throw e;
+            }
+            Log.i(LOG_TAG, "Batch upload not supported by server");
+            batchUploadUnsupported = true;
+            sendOneByOne(client, ReadyRaports.getInstance().getAllReadyRaports());
+            return false;
+        }
+    }
+
+    // only raports started before client ids were introduced need ids reserved on the server
+    private void assignServerIds(Server.Client client,
+                                 List<Raport> batch,
+                                 Map<Raport, Integer> toSend) throws TException {
+        List<Raport> withoutId = new ArrayList<>();
+        for (Raport raport : batch) {
+            if (toSend.get(raport) == null && raport.getClientId() == null) {
+                withoutId.add(raport);
+            }
+        }
+        if (withoutId.isEmpty()) {
+            return;
+        }
+
+        List<Integer> ids = client.getIdsForNewReports(withoutId.size());
+        Map<Raport, Integer> newIds = new HashMap<>();
+        for (int i = 0; i < withoutId.size(); i++) {
+            newIds.put(withoutId.get(i), ids.get(i));
+        }
+        ReadyRaports.getInstance().setServerIds(newIds);
+        toSend.putAll(newIds);
+    }
+
+    private Map<Raport, Integer> subMap(Map<Raport, Integer> map, List<Raport> keys) {
+        Map<Raport, Integer> result = new HashMap<>();
+        for (Raport key : keys) {
+            result.put(key, map.get(key));
+        }
+        return result;
+    }
+
     private RawReport translateToThrift(Raport raport, Integer serverId) {
         RawReport rawRaport = new RawReport();
         rawRaport.setAnswersBefore(translateSurvey(raport.getPreSurveyAnswers()));
         rawRaport.setHistory(translateActions(raport.getHistory()));
         rawRaport.setAnswersAfter(translateSurvey(raport.getPostSurveyAnswers()));
-        rawRaport.setReportId(serverId);
+        if (raport.getClientId() != null) {
+            rawRaport.setClientId(raport.getClientId());
+        }
+        if (serverId != null) {
+            rawRaport.setReportId(serverId);
+        }
         rawRaport.setExperimentId(raport.getExperimentId());
         rawRaport.setBeginTime(translateDate(raport.getStartDate()));
         rawRaport.setFinishTime(translateDate(raport.getEndDate()));
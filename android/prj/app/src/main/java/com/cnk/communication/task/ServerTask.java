@@ -2,16 +2,16 @@ package com.cnk.communication.task;
 
 import android.util.Log;
 
+import com.cnk.communication.ConnectionPool;
+import com.cnk.communication.Deadline;
 import com.cnk.communication.NetworkHandler;
+import com.cnk.communication.TransportStats;
 import com.cnk.communication.thrift.Server;
 import com.cnk.exceptions.NoExperimentException;
 import com.cnk.utilities.Consts;
 
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocol;
-import org.apache.thrift.transport.TFramedTransport;
-import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
 
 import java.io.IOException;
 
@@ -21,7 +21,9 @@ public abstract class ServerTask extends Task {
         NOWIFI("no wifi"),
         SOCKET_OPEN_FAILED("socket opening failed"),
         ACTION_FAILED("action on opened socket failed"),
-        NO_EXPERIMENT("no active experiment");
+        NO_EXPERIMENT("no active experiment"),
+        DEADLINE_EXCEEDED("task didn't finish in time"),
+        CANCELLED("task cancelled");
 
         private String description;
 
@@ -36,68 +38,91 @@ public abstract class ServerTask extends Task {
     }
 
     protected static final String LOG_TAG = "ServerTask";
-    private static final String SEND_ADDRESS = "zpp.ddns.us";
-    private static final int SEND_PORT = 9090;
+    private static final long DEFAULT_DEADLINE_SECONDS = 30;
     private NetworkHandler.SuccessAction success;
     private NetworkHandler.FailureAction failure;
+    private final Deadline deadline;
 
     public ServerTask(NetworkHandler.SuccessAction success, NetworkHandler.FailureAction failure) {
+        this(success, failure, DEFAULT_DEADLINE_SECONDS);
+    }
+
+    // deadline covers the whole run: connecting, all calls and downloads
+    public ServerTask(NetworkHandler.SuccessAction success,
+                      NetworkHandler.FailureAction failure,
+                      long deadlineSeconds) {
         this.success = success;
         this.failure = failure;
+        this.deadline = new Deadline(deadlineSeconds * Consts.MILLIS_IN_SEC);
     }
 
     @Override
     public void run() {
         Log.i(LOG_TAG, "Starting run: " + getTaskName());
 
+        if (deadline.isCancelled()) {
+            notifyFailure(FailureReason.CANCELLED);
+            return;
+        }
+
         if (!NetworkHandler.getInstance().isConnectedToWifi()) {
             notifyFailure(FailureReason.NOWIFI);
             return;
         }
 
-        TFramedTransport socket = openSocket();
-        TProtocol protocol = new TBinaryProtocol(socket);
-        Server.Client client = new Server.Client(protocol);
-        if (socket == null) {
-            notifyFailure(FailureReason.SOCKET_OPEN_FAILED);
+        deadline.start();
+        ConnectionPool.Connection connection;
+        try {
+            connection = ConnectionPool.getInstance().acquire(deadline);
+        } catch (TTransportException transportException) {
+            Log.e(LOG_TAG, transportException.toString());
+            notifyFailure(reasonOf(FailureReason.SOCKET_OPEN_FAILED));
             return;
         }
 
         try {
-            performInSession(client);
+            performInSession(connection.getClient());
+            ConnectionPool.getInstance().release(connection);
         } catch (NoExperimentException noe) {
             noe.printStackTrace();
+            ConnectionPool.getInstance().release(connection);
             notifyFailure(FailureReason.NO_EXPERIMENT);
         } catch (Exception e) {
             e.printStackTrace();
-            notifyFailure(FailureReason.ACTION_FAILED);
+            ConnectionPool.getInstance().invalidate(connection);
+            notifyFailure(reasonOf(FailureReason.ACTION_FAILED));
             return;
-        } finally {
-            socket.close();
         }
 
         notifySuccess();
     }
 
-    protected abstract void performInSession(Server.Client client) throws TException, IOException, NoExperimentException;
+    @Override
+    public void cancel() {
+        Log.i(LOG_TAG, "Cancelling " + getTaskName());
+        deadline.cancel();
+    }
 
-    private TFramedTransport openSocket() {
-        TFramedTransport socket = new TFramedTransport(new TSocket(SEND_ADDRESS,
-                                                                   SEND_PORT,
-                                                                   5 * (int) Consts.MILLIS_IN_SEC));
-        Log.i(LOG_TAG, "Opening socket for address " + SEND_ADDRESS);
-        try {
-            socket.open();
-            Log.i(LOG_TAG, "Opened socket");
-        } catch (org.apache.thrift.transport.TTransportException transportException) {
-            Log.e(LOG_TAG, transportException.toString());
-            socket = null;
+    protected Deadline getDeadline() {
+        return deadline;
+    }
+
+    // failure caused by the deadline shows up as some I/O error
+    private FailureReason reasonOf(FailureReason otherwise) {
+        if (deadline.isCancelled()) {
+            return FailureReason.CANCELLED;
+        }
+        if (deadline.isExpired()) {
+            return FailureReason.DEADLINE_EXCEEDED;
         }
-        return socket;
+        return otherwise;
     }
 
+    protected abstract void performInSession(Server.Client client) throws TException, IOException, NoExperimentException;
+
     private void notifyFailure(FailureReason reason) {
         Log.e(LOG_TAG, "Task failed: " + getTaskName() + ", reason: " + reason);
+        TransportStats.getInstance().recordFailure(reason);
         if (failure != null) {
             failure.perform(this, reason);
         }
@@ -6,4 +6,8 @@ public abstract class Task {
     }
 
     public abstract void run();
+
+    // stops the task if it's running, or makes it fail right away when it's run
+    public void cancel() {
+    }
 }
@@ -3,7 +3,6 @@ package com.cnk.data;
 import android.util.Log;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -17,13 +16,22 @@ import java.io.Serializable;
 public class FileHandler {
 
     private static final String LOG_TAG = "FILE_HANDLER";
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
 
     private static FileHandler instance;
+    // tiles are saved by several download threads at once
+    private final ThreadLocal<byte[]> copyBuffers;
 
     private FileHandler() {
+        copyBuffers = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[COPY_BUFFER_SIZE];
+            }
+        };
     }
 
-    public static FileHandler getInstance() {
+    public static synchronized FileHandler getInstance() {
         if (instance == null) {
             instance = new FileHandler();
         }
@@ -31,12 +39,33 @@ public class FileHandler {
     }
 
     public void saveInputStream(InputStream in, String filename) throws IOException {
+        try {
+            copyToFile(in, filename);
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+        Doesn't close the stream, e.g. to save one entry of an archive. Copies through
+        a buffer reused by the thread, returns number of bytes written.
+     */
+    public long copyToFile(InputStream in, String filename) throws IOException {
         File file = new File(filename);
         file.getParentFile().mkdirs();
         FileOutputStream out = new FileOutputStream(file);
-        IOUtils.copy(in, out);
-        out.close();
-        in.close();
+        try {
+            byte[] buffer = copyBuffers.get();
+            long written = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                written += read;
+            }
+            return written;
+        } finally {
+            out.close();
+        }
     }
 
     public void saveSerializable(Serializable toSave, String filename) throws IOException {
@@ -54,6 +83,13 @@ public class FileHandler {
         return new FileInputStream(file);
     }
 
+    public void removeDirectory(String path) throws IOException {
+        File dir = new File(path);
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
     public void renameFile(String from, String to) throws IOException {
         if (from == null) {
             return;
@@ -11,23 +11,28 @@ import com.cnk.notificators.Observable;
 import com.cnk.utilities.Consts;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ExhibitsData extends Observable<ExhibitsData.ExhibitsUpdateAction> {
     public interface ExhibitsUpdateAction {
-        void doOnUpdate(List<Exhibit> changedExhibits, boolean fullRefresh);
+        void doOnUpdate(List<Exhibit> changedExhibits, List<Integer> removedExhibitIds);
     }
 
     private static ExhibitsData instance;
     private Integer exhibitsVersion;
+    private Integer resyncCursor;
     private DatabaseHelper dbHelper;
     private List<FloorExhibitsInfo> floorInfos;
 
     private ExhibitsData() {
         floorInfos = new ArrayList<>();
         exhibitsVersion = null;
+        resyncCursor = null;
     }
 
     public static ExhibitsData getInstance() {
@@ -37,14 +42,14 @@ public class ExhibitsData extends Observable<ExhibitsData.ExhibitsUpdateAction>
         return instance;
     }
 
-    public void notifyObservers(List<Exhibit> changedExhibits, boolean fullRefresh) {
+    public void notifyObservers(List<Exhibit> changedExhibits, List<Integer> removedExhibitIds) {
         List<ExhibitsUpdateAction> actions = new ArrayList<>();
         for (ExhibitsUpdateAction action : observers.values()) {
             actions.add(action);
         }
 
         for (ExhibitsUpdateAction action : actions) {
-            action.doOnUpdate(changedExhibits, fullRefresh);
+            action.doOnUpdate(changedExhibits, removedExhibitIds);
         }
     }
 
@@ -54,6 +59,7 @@ public class ExhibitsData extends Observable<ExhibitsData.ExhibitsUpdateAction>
 
     public void loadDbData() throws DatabaseLoadException {
         exhibitsVersion = dbHelper.getVersion(Version.EXHIBITS);
+        resyncCursor = dbHelper.getVersion(Version.EXHIBITS_RESYNC);
         try {
             floorInfos.clear();
             for (int floor = 0; floor < MapData.getInstance().getFloorsCount(); floor++) {
@@ -75,18 +81,47 @@ public class ExhibitsData extends Observable<ExhibitsData.ExhibitsUpdateAction>
         return map;
     }
 
-    public void setExhibits(List<Exhibit> exhibits, Integer version, boolean fullRefresh) {
-        if (fullRefresh) {
-            dbHelper.clearAllExhibits();
-            for (FloorExhibitsInfo currentFloor : floorInfos) {
-                currentFloor.removeAllExhibits();
+    // exhibits stored locally which aren't among the given ones
+    public List<Integer> getExhibitIdsNotIn(Collection<Integer> existingIds) {
+        Set<Integer> existing = new HashSet<>(existingIds);
+        List<Integer> stale = new ArrayList<>();
+        for (Integer id : dbHelper.getAllExhibitIds()) {
+            if (!existing.contains(id)) {
+                stale.add(id);
             }
         }
+        return stale;
+    }
+
+    /*
+        Applies one page of changes in a single transaction, so sync interrupted
+        between pages continues from the last applied one.
+        Page of an unfinished resync only moves resync cursor, version is set
+        when all pages were applied.
+     */
+    public void applyChanges(List<Exhibit> changedExhibits,
+                             List<Integer> removedExhibitIds,
+                             Integer cursor,
+                             boolean resyncInProgress) {
+        if (resyncInProgress) {
+            dbHelper.applyExhibitChanges(exhibitsVersion, cursor, changedExhibits, removedExhibitIds);
+            resyncCursor = cursor;
+        } else {
+            dbHelper.applyExhibitChanges(cursor, null, changedExhibits, removedExhibitIds);
+            exhibitsVersion = cursor;
+            resyncCursor = null;
+        }
+        removeExhibits(removedExhibitIds);
+        updateExhibits(changedExhibits);
+        notifyObservers(changedExhibits, removedExhibitIds);
+    }
 
-        dbHelper.addOrUpdateExhibits(version, exhibits);
-        updateExhibits(exhibits);
-        exhibitsVersion = version;
-        notifyObservers(exhibits, fullRefresh);
+    private void removeExhibits(List<Integer> ids) {
+        for (Integer id : ids) {
+            for (FloorExhibitsInfo currentFloor : floorInfos) {
+                currentFloor.removeExhibit(id);
+            }
+        }
     }
 
     private void updateExhibits(List<Exhibit> newExhibits) {
@@ -112,4 +147,12 @@ public class ExhibitsData extends Observable<ExhibitsData.ExhibitsUpdateAction>
         return exhibitsVersion;
     }
 
+    public Integer getResyncCursor() {
+        return resyncCursor;
+    }
+
+    public boolean isResyncPending() {
+        return resyncCursor != null;
+    }
+
 }
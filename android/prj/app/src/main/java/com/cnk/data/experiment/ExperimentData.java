@@ -4,6 +4,8 @@ import android.support.annotation.NonNull;
 import android.util.Log;
 
 import com.cnk.communication.NetworkHandler;
+import com.cnk.communication.TaskHandle;
+import com.cnk.data.DataTranslator;
 import com.cnk.data.FileHandler;
 import com.cnk.data.experiment.survey.Survey;
 import com.cnk.data.raports.Raport;
@@ -15,10 +17,18 @@ import com.cnk.database.realm.RaportFileRealm;
 import com.cnk.utilities.Consts;
 import com.cnk.utilities.Util;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.thrift.TDeserializer;
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -71,11 +81,16 @@ public class ExperimentData {
     private static final String RAPORT_DIRECTORY = "raports/";
     private static final String RAPORT_FILE_PREFIX = "raport";
     private static final String TMP = "TMP";
+    private static final String EXPERIMENT_DIRECTORY = "experiment/";
+    private static final String EXPERIMENT_FILE = "current";
     private static ExperimentData instance;
     private Lock raportLock;
     private DatabaseHelper dbHelper;
     private Raport currentRaport;
     private Experiment experiment;
+    // kept in the form received from server, each visitor gets a fresh copy translated from it
+    private com.cnk.communication.thrift.CurrentExperimentResponse cachedExperiment;
+    private boolean cacheLoaded = false;
 
     private ExperimentData() {
         raportLock = new ReentrantLock(true);
@@ -96,9 +111,50 @@ public class ExperimentData {
         experiment = newData;
     }
 
-    public void downloadExperiment(NetworkHandler.SuccessAction success,
-                                   NetworkHandler.FailureAction failure) {
-        NetworkHandler.getInstance().downloadExperimentData(success, failure);
+    public TaskHandle downloadExperiment(NetworkHandler.SuccessAction success,
+                                         NetworkHandler.FailureAction failure) {
+        return NetworkHandler.getInstance().downloadExperimentData(success, failure);
+    }
+
+    // cached copy is used right away, so visitors don't wait for the server
+    public synchronized boolean prepareExperiment() {
+        loadCachedExperiment();
+        if (cachedExperiment == null) {
+            return false;
+        }
+        experiment = DataTranslator.getExperimentFromThrift(cachedExperiment.getExperiment());
+        return true;
+    }
+
+    public synchronized Integer getCachedExperimentId() {
+        loadCachedExperiment();
+        return cachedExperiment == null ? null : cachedExperiment.getExperiment().getExperimentId();
+    }
+
+    public synchronized Long getCachedContentVersion() {
+        loadCachedExperiment();
+        if (cachedExperiment == null || !cachedExperiment.isSetContentVersion()) {
+            return null;
+        }
+        return cachedExperiment.getContentVersion();
+    }
+
+    // version is null when server doesn't support revalidation
+    public synchronized void setCachedExperiment(com.cnk.communication.thrift.Experiment newExperiment,
+                                                 Long contentVersion) {
+        cachedExperiment = new com.cnk.communication.thrift.CurrentExperimentResponse();
+        cachedExperiment.setExperiment(newExperiment);
+        if (contentVersion != null) {
+            cachedExperiment.setContentVersion(contentVersion);
+        }
+        cacheLoaded = true;
+        saveCachedExperiment();
+    }
+
+    public synchronized void clearCachedExperiment() {
+        cachedExperiment = null;
+        cacheLoaded = true;
+        new File(getCachedExperimentPath()).delete();
     }
 
     public Survey getSurvey(@NonNull Survey.SurveyType type) {
@@ -117,6 +173,7 @@ public class ExperimentData {
     public void startNewRaport() {
         Integer newId = dbHelper.getNextRaportId();
         currentRaport = new Raport(newId,
+                                   UUID.randomUUID().toString(),
                                    new Timestamp(new Date()),
                                    experiment.getId(),
                                    experiment.getSurvey(Survey.SurveyType.BEFORE)
@@ -154,6 +211,48 @@ public class ExperimentData {
         raportLock.unlock();
     }
 
+    private void loadCachedExperiment() {
+        if (cacheLoaded) {
+            return;
+        }
+        cacheLoaded = true;
+        File file = new File(getCachedExperimentPath());
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            FileInputStream in = FileHandler.getInstance().getFile(file.getPath());
+            byte[] bytes = IOUtils.toByteArray(in);
+            in.close();
+            com.cnk.communication.thrift.CurrentExperimentResponse loaded =
+                    new com.cnk.communication.thrift.CurrentExperimentResponse();
+            new TDeserializer().deserialize(loaded, bytes);
+            if (loaded.getExperiment() != null) {
+                cachedExperiment = loaded;
+                Log.i(LOG_TAG, "Loaded cached experiment " + loaded.getExperiment().getName());
+            }
+        } catch (IOException | TException e) {
+            e.printStackTrace();
+            Log.e(LOG_TAG, "Unable to load cached experiment");
+        }
+    }
+
+    private void saveCachedExperiment() {
+        String path = getCachedExperimentPath();
+        try {
+            byte[] bytes = new TSerializer().serialize(cachedExperiment);
+            FileHandler.getInstance().saveInputStream(new ByteArrayInputStream(bytes), path + TMP);
+            FileHandler.getInstance().renameFile(path + TMP, EXPERIMENT_FILE);
+        } catch (IOException | TException e) {
+            e.printStackTrace();
+            Log.e(LOG_TAG, "Unable to save cached experiment");
+        }
+    }
+
+    private String getCachedExperimentPath() {
+        return Consts.DATA_PATH + EXPERIMENT_DIRECTORY + EXPERIMENT_FILE;
+    }
+
     private String getCurrentRaportPath() {
         String dir = Consts.DATA_PATH + RAPORT_DIRECTORY;
         new File(dir).mkdirs();
@@ -1,26 +1,34 @@
 package com.cnk.data.map;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Log;
 
+import com.cnk.communication.Deadline;
 import com.cnk.communication.NetworkHandler;
-import com.cnk.data.Downloader;
+import com.cnk.communication.TaskHandle;
 import com.cnk.data.FileHandler;
 import com.cnk.database.DatabaseHelper;
 import com.cnk.database.models.MapTileInfo;
 import com.cnk.database.models.ZoomLevelResolution;
 import com.cnk.exceptions.DatabaseLoadException;
 import com.cnk.notificators.Observable;
+import com.cnk.notificators.ProgressChannel;
 import com.cnk.utilities.Consts;
 
-import java.io.FileNotFoundException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
+    // called on the main thread
     public interface MapDownloadUpdateAction {
         void doOnUpdate(int downloaded, int allToDownload);
     }
@@ -28,16 +36,54 @@ public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
     private static final String LOG_TAG = "MapData";
     private static final String MAP_DIRECTORY = "maps";
     private static final String TILE_FILE_PREFIX = "tile";
+    private static final String ATLAS_FILE_PREFIX = "atlas";
     private static final String TMP = "TMP";
-    private static final Integer TILE_DOWNLOAD_RETRYS = 3;
-    private static final Integer TILE_DOWNLOAD_FAILURE_WAIT_SECONDS = 3;
+    private static final String MANIFEST_FILE = "manifest";
+    private static final String JOURNAL_FILE = "journal";
+    // ETag or Last-Modified of tiles without hash, written in both directories like the manifest
+    private static final String VALIDATORS_FILE = "validators";
+    private static final String UNKNOWN_HASH_PREFIX = "url:";
+    private static final int TILE_DOWNLOAD_WORKERS = 4;
+    // at most this many connections to a host are open at once, idle ones are reused
+    private static final int TILE_DOWNLOAD_CONNECTIONS_PER_HOST = 4;
+    private static final int TILE_DOWNLOAD_ATTEMPTS = 3;
+    private static final long TILE_DOWNLOAD_INITIAL_BACKOFF_MILLIS = 500;
+    private static final long TILE_DOWNLOAD_MAX_BACKOFF_MILLIS = 8 * Consts.MILLIS_IN_SEC;
+    // pack of a zoom level is downloaded whole, so it's used only when enough of it is missing
+    private static final int PACK_MIN_MISSING_TILES_PERCENT = 25;
+    // parts of the heap for decoded tiles and for bitmaps waiting for reuse
+    private static final int TILE_CACHE_HEAP_DIVISOR = 8;
+    private static final int TILE_POOL_HEAP_DIVISOR = 32;
+    // progress dialog is updated a few times per second, not after every tile
+    private static final long PROGRESS_INTERVAL_MILLIS = 200;
     private static MapData instance;
     private DatabaseHelper dbHelper;
     private List<FloorMapInfo> floorInfos;
     private int floorsCount;
+    private TileDownloader tileDownloader;
+    // floor -> opened atlas, null when the floor has none
+    private Map<Integer, TileAtlas> atlases;
+    private TileBitmapCache tileCache;
+    private TileBitmapPool bitmapPool;
+    private volatile TileDecodeProfile decodeProfile = TileDecodeProfile.BALANCED;
+    private ProgressChannel downloadProgress;
 
     private MapData() {
         floorInfos = new ArrayList<>();
+        atlases = new HashMap<>();
+        downloadProgress = new ProgressChannel(PROGRESS_INTERVAL_MILLIS);
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        bitmapPool = new TileBitmapPool((int) Math.min(maxMemory / TILE_POOL_HEAP_DIVISOR,
+                                                       Integer.MAX_VALUE));
+        tileCache = new TileBitmapCache((int) Math.min(maxMemory / TILE_CACHE_HEAP_DIVISOR,
+                                                       Integer.MAX_VALUE),
+                                        bitmapPool);
+        tileDownloader = new TileDownloader(new TileFetcher(),
+                                            TILE_DOWNLOAD_WORKERS,
+                                            TILE_DOWNLOAD_CONNECTIONS_PER_HOST,
+                                            TILE_DOWNLOAD_ATTEMPTS,
+                                            TILE_DOWNLOAD_INITIAL_BACKOFF_MILLIS,
+                                            TILE_DOWNLOAD_MAX_BACKOFF_MILLIS);
     }
 
     public static MapData getInstance() {
@@ -58,9 +104,9 @@ public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
         }
     }
 
-    public void downloadMap(NetworkHandler.SuccessAction success,
-                            NetworkHandler.FailureAction failure) {
-        NetworkHandler.getInstance().downloadMap(success, failure);
+    public TaskHandle downloadMap(NetworkHandler.SuccessAction success,
+                                  NetworkHandler.FailureAction failure) {
+        return NetworkHandler.getInstance().downloadMap(success, failure);
     }
 
     public void setDbHelper(DatabaseHelper dbHelper) {
@@ -100,28 +146,137 @@ public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
         }
     }
 
-    public void setMaps(List<FloorMap> maps) throws IOException {
-        dbHelper.clearMaps();
-        int allTilesCount = 0;
-        int downloadedTilesCount = 0;
+    // download left by a killed application is continued by the next one
+    public boolean isDownloadPending() {
+        return new File(getStagingDirectory() + JOURNAL_FILE).exists();
+    }
+
+    /*
+        Only tiles with hash different from the one in manifest of saved tiles are
+        downloaded, into staging directory. Every downloaded tile is written to the journal,
+        so download interrupted by a crash continues from where it stopped.
+        Tiles without hash (older server) are downloaded if the server says they changed since
+        they were saved, journal identifies them by url.
+        Zoom levels with many missing tiles are downloaded as one pack when the server has it.
+     */
+    public void setMaps(List<FloorMap> maps, Deadline deadline) throws IOException {
+        String mapsDirectory = getMapsDirectory();
+        String stagingDirectory = getStagingDirectory();
+        TileManifest saved = TileManifest.load(mapsDirectory + MANIFEST_FILE);
+        TileManifest staged = TileManifest.load(stagingDirectory + JOURNAL_FILE);
+        TileManifest manifest = new TileManifest();
+        TileManifest savedValidators = TileManifest.load(mapsDirectory + VALIDATORS_FILE);
+        TileManifest stagedValidators = TileManifest.load(stagingDirectory + VALIDATORS_FILE);
+        TileManifest validators = new TileManifest();
+
+        Set<String> filenames = new HashSet<>();
+        Set<String> toInstall = new HashSet<>();
+        List<TileDownloader.Tile> toDownload = new ArrayList<>();
+        List<TileDownloader.Pack> packs = new ArrayList<>();
+        Map<TileDownloader.Tile, String> identities = new HashMap<>();
+        int ready = 0;
         for (FloorMap map : maps) {
-            ArrayList<ZoomLevel> zoomLevels = map.getZoomLevels();
-            for (ZoomLevel level : zoomLevels) {
-                ArrayList<ArrayList<String>> tiles = level.getTilesFiles();
-                for (ArrayList<String> tilesRow : tiles) {
-                    allTilesCount += tilesRow.size();
+            TileAtlas installed = getAtlas(map.getFloor());
+            ArrayList<ZoomLevel> levels = map.getZoomLevels();
+            for (int level = 0; level < levels.size(); level++) {
+                ArrayList<ArrayList<String>> urls = levels.get(level).getTilesFiles();
+                Map<String, TileDownloader.Tile> levelToDownload = new HashMap<>();
+                int levelTiles = 0;
+                for (int i = 0; i < urls.size(); i++) {
+                    for (int j = 0; j < urls.get(i).size(); j++) {
+                        String filename = getTileFilename(i, j, map.getFloor(), level);
+                        String url = urls.get(i).get(j);
+                        String hash = levels.get(level).getTileHash(i, j);
+                        levelTiles++;
+                        filenames.add(filename);
+                        if (hash != null) {
+                            manifest.put(filename, hash);
+                            if (hash.equals(saved.get(filename)) && installed != null &&
+                                installed.hasTile(level, i, j)) {
+                                ready++;
+                                continue;
+                            }
+                        }
+
+                        toInstall.add(filename);
+                        String identity = hash != null ? hash : UNKNOWN_HASH_PREFIX + url;
+                        if (identity.equals(staged.get(filename)) &&
+                            new File(stagingDirectory + filename).exists()) {
+                            if (stagedValidators.get(filename) != null) {
+                                validators.put(filename, stagedValidators.get(filename));
+                            }
+                            ready++;
+                            continue;
+                        }
+                        String validator = null;
+                        if (hash == null && installed != null && installed.hasTile(level, i, j)) {
+                            validator = savedValidators.get(filename);
+                        }
+                        String path = stagingDirectory + filename;
+                        TileDownloader.Tile tile = new TileDownloader.Tile(url, path, validator);
+                        identities.put(tile, identity);
+                        // packs can't be revalidated
+                        if (validator != null) {
+                            toDownload.add(tile);
+                        } else {
+                            levelToDownload.put(getPackEntryName(i, j), tile);
+                        }
+                    }
+                }
+
+                String packUrl = levels.get(level).getPackUrl();
+                if (packUrl != null && !levelToDownload.isEmpty() &&
+                    levelToDownload.size() * 100 >= levelTiles * PACK_MIN_MISSING_TILES_PERCENT) {
+                    TileDownloader.Pack pack = new TileDownloader.Pack(packUrl);
+                    for (String entryName : levelToDownload.keySet()) {
+                        pack.add(entryName, levelToDownload.get(entryName));
+                    }
+                    packs.add(pack);
+                } else {
+                    toDownload.addAll(levelToDownload.values());
                 }
             }
         }
 
-        Log.i(LOG_TAG, "Setting new maps");
-        for (FloorMap map : maps) {
-            downloadedTilesCount += downloadAndSaveFloor(map, allTilesCount, downloadedTilesCount);
-        }
+        Log.i(LOG_TAG, "Setting new maps, " + ready + " tiles ready, downloading " +
+                       identities.size() + " in " + packs.size() + " packs and " +
+                       toDownload.size() + " one by one");
+        int allTiles = filenames.size();
+        int readyTiles = ready;
+        downloadProgress.post(() -> notifyObservers(readyTiles, allTiles));
+        TileDownloader.ProgressAction progress = (tile, result, done, all) -> {
+            String filename = new File(tile.getPath()).getName();
+            if (result.getValidator() != null) {
+                validators.put(filename, result.getValidator());
+            }
+            if (!result.isModified()) {
+                // saved tile is kept
+                toInstall.remove(filename);
+                downloadProgress.post(() -> notifyObservers(readyTiles + done, allTiles));
+                return;
+            }
+            try {
+                if (result.getValidator() != null) {
+                    TileManifest.append(stagingDirectory + VALIDATORS_FILE,
+                                        filename,
+                                        result.getValidator());
+                }
+                TileManifest.append(stagingDirectory + JOURNAL_FILE,
+                                    filename,
+                                    identities.get(tile));
+            } catch (IOException e) {
+                // tile is only downloaded again after crash
+                Log.e(LOG_TAG, "Journal update failed: " + e.toString());
+            }
+            downloadProgress.post(() -> notifyObservers(readyTiles + done, allTiles));
+        };
+        tileDownloader.downloadAll(toDownload, packs, deadline, progress);
+        downloadProgress.finish(() -> notifyObservers(allTiles, allTiles));
 
-        FileHandler.getInstance().renameFile(Consts.DATA_PATH + MAP_DIRECTORY + TMP, MAP_DIRECTORY);
+        installTiles(maps, toInstall, manifest, validators);
         Log.i(LOG_TAG, "Files saved, saving to db");
 
+        dbHelper.clearMaps();
         for (FloorMap map : maps) {
             dbHelper.setMap(map);
         }
@@ -129,85 +284,192 @@ public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
         Log.i(LOG_TAG, "New maps set");
     }
 
-    private int downloadAndSaveFloor(FloorMap map,
-                                     int allTiles,
-                                     int alreadyDownloadedTiles) throws IOException {
-        int tilesCountFromFloor = 0;
+    /*
+        Atlas of every floor is written again, with new tiles taken from staging directory
+        and the rest from the old atlas. Manifest is removed meanwhile, so tiles of unknown
+        state are downloaded again.
+     */
+    private void installTiles(List<FloorMap> maps,
+                              Set<String> toInstall,
+                              TileManifest manifest,
+                              TileManifest validators) throws IOException {
+        String mapsDirectory = getMapsDirectory();
+        String stagingDirectory = getStagingDirectory();
+        new File(mapsDirectory + MANIFEST_FILE).delete();
+        new File(mapsDirectory + VALIDATORS_FILE).delete();
+        new File(mapsDirectory).mkdirs();
+        Set<String> atlasFilenames = new HashSet<>();
+        for (FloorMap map : maps) {
+            writeAtlas(map, toInstall);
+            atlasFilenames.add(getAtlasFilename(map.getFloor()));
+        }
+
+        // atlases of removed floors and tiles saved one per file by older versions
+        File[] files = new File(mapsDirectory).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(TILE_FILE_PREFIX) ||
+                    (file.getName().startsWith(ATLAS_FILE_PREFIX) &&
+                     !atlasFilenames.contains(file.getName()))) {
+                    file.delete();
+                }
+            }
+        }
+        synchronized (this) {
+            atlases.clear();
+        }
+        tileCache.clear();
+
+        manifest.save(mapsDirectory + MANIFEST_FILE);
+        validators.save(mapsDirectory + VALIDATORS_FILE);
+        FileHandler.getInstance().removeDirectory(stagingDirectory);
+    }
+
+    private void writeAtlas(FloorMap map, Set<String> toInstall) throws IOException {
+        int floor = map.getFloor();
+        TileAtlas installed = getAtlas(floor);
         ArrayList<ZoomLevel> levels = map.getZoomLevels();
+        int[] columns = new int[levels.size()];
+        int[] rows = new int[levels.size()];
         for (int level = 0; level < levels.size(); level++) {
-            ArrayList<ArrayList<String>> tiles = levels.get(level).getTilesFiles();
-            for (int i = 0; i < tiles.size(); i++) {
-                for (int j = 0; j < tiles.get(i).size(); j++) {
-                    String tmpFilename = getTemporaryPathForTile(map.getFloor(), level, i, j);
-                    String actualFilename = getPathForTile(map.getFloor(), level, i, j);
-
-                    int errors = 0;
-                    while (errors++ < TILE_DOWNLOAD_RETRYS) {
-                        try {
-                            InputStream in = Downloader.getInstance().download(tiles.get(i).get(j));
-                            FileHandler.getInstance().saveInputStream(in, tmpFilename);
-                            break;
-                        } catch (IOException e) {
-                            if (errors < TILE_DOWNLOAD_RETRYS) {
-                                Log.i(LOG_TAG,
-                                      "Downloading " + tiles.get(i).get(j) + " failed, retrying.");
-                                try {
-                                    Thread.sleep(TILE_DOWNLOAD_FAILURE_WAIT_SECONDS *
-                                                 Consts.MILLIS_IN_SEC);
-                                } catch (InterruptedException e1) {
-                                    e1.printStackTrace();
-                                }
-                            } else {
-                                Log.e(LOG_TAG, "Map tile downloading failed after " +
-                                               TILE_DOWNLOAD_RETRYS.toString() +
-                                               " retrys.");
-                                throw e;
+            ArrayList<ArrayList<String>> urls = levels.get(level).getTilesFiles();
+            columns[level] = urls.size();
+            for (ArrayList<String> column : urls) {
+                rows[level] = Math.max(rows[level], column.size());
+            }
+        }
+
+        TileAtlas.Writer writer =
+                new TileAtlas.Writer(getMapsDirectory() + getAtlasFilename(floor), columns, rows);
+        try {
+            for (int level = 0; level < levels.size(); level++) {
+                ArrayList<ArrayList<String>> urls = levels.get(level).getTilesFiles();
+                for (int i = 0; i < urls.size(); i++) {
+                    for (int j = 0; j < urls.get(i).size(); j++) {
+                        String filename = getTileFilename(i, j, floor, level);
+                        if (toInstall.contains(filename)) {
+                            InputStream in = new FileInputStream(getStagingDirectory() + filename);
+                            try {
+                                writer.put(level, i, j, in);
+                            } finally {
+                                in.close();
+                            }
+                        } else {
+                            ByteBuffer tile = installed != null ? installed.getTile(level, i, j)
+                                                                : null;
+                            if (tile == null) {
+                                throw new IOException("Tile " + filename + " is missing");
                             }
+                            writer.put(level, i, j, tile);
                         }
                     }
-
-                    tiles.get(i).set(j, actualFilename);
-                    tilesCountFromFloor++;
-                    notifyObservers(alreadyDownloadedTiles + tilesCountFromFloor, allTiles);
                 }
             }
+            writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+    }
+
+    private synchronized TileAtlas getAtlas(int floor) {
+        if (!atlases.containsKey(floor)) {
+            TileAtlas atlas = null;
+            try {
+                atlas = TileAtlas.open(getMapsDirectory() + getAtlasFilename(floor));
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Opening atlas of floor " + floor + " failed: " + e.toString());
+            }
+            atlases.put(floor, atlas);
         }
-        return tilesCountFromFloor;
+        return atlases.get(floor);
+    }
+
+    private String getAtlasFilename(int floor) {
+        return ATLAS_FILE_PREFIX + floor;
+    }
+
+    private String getMapsDirectory() {
+        return Consts.DATA_PATH + MAP_DIRECTORY + "/";
     }
 
-    private String getTemporaryPathForTile(int floorNo, int zoomLevel, int x, int y) {
-        String dir = Consts.DATA_PATH + MAP_DIRECTORY + TMP + "/";
-        return dir + getTileFilename(x, y, floorNo, zoomLevel);
+    private String getStagingDirectory() {
+        return Consts.DATA_PATH + MAP_DIRECTORY + TMP + "/";
     }
 
-    private String getPathForTile(int floorNo, int zoomLevel, int x, int y) {
-        String dir = Consts.DATA_PATH + MAP_DIRECTORY;
-        return dir + getTileFilename(x, y, floorNo, zoomLevel);
+    // layout of tile packs made by the server
+    private String getPackEntryName(int x, int y) {
+        return x + "/" + y + ".jpg";
     }
 
+    // returned bitmap has to be given back with releaseTile, when it isn't drawn anymore
     public Bitmap getTile(int floor, int zoomLevel, int row, int column) {
-        String tileFilename = getTileFilename(row, column, floor, zoomLevel);
-        tileFilename = Consts.DATA_PATH + MAP_DIRECTORY + "/" + tileFilename;
-        Bitmap bmp = null;
-        InputStream in = null;
-        try {
-            in = FileHandler.getInstance().getFile(tileFilename);
-            bmp = BitmapFactory.decodeStream(in);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            Log.e(LOG_TAG, "File " + tileFilename + " not found");
-        } finally {
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+        Bitmap cached = tileCache.get(floor, zoomLevel, row, column);
+        if (cached != null) {
+            return cached;
+        }
+        return decodeTile(floor, zoomLevel, row, column);
+    }
+
+    // decodes the tile into the cache ahead of the map view, unless it's there already
+    public void prefetchTile(int floor, int zoomLevel, int row, int column) {
+        if (tileCache.contains(floor, zoomLevel, row, column)) {
+            return;
+        }
+        Bitmap bmp = decodeTile(floor, zoomLevel, row, column);
+        if (bmp != null) {
+            bitmapPool.release(bmp);
+        }
+    }
+
+    // decoded bitmap is put into the cache and retained for the caller
+    private Bitmap decodeTile(int floor, int zoomLevel, int row, int column) {
+        TileAtlas atlas = getAtlas(floor);
+        ByteBuffer tile = atlas != null ? atlas.getTile(zoomLevel, row, column) : null;
+        if (tile == null) {
+            Log.e(LOG_TAG, "Tile " + getTileFilename(row, column, floor, zoomLevel) + " not found");
+            return null;
+        }
+        Bitmap bmp = bitmapPool.decode(tile, decodeProfile.getConfig());
+        if (bmp != null) {
+            tileCache.put(floor, zoomLevel, row, column, bmp);
         }
         return bmp;
     }
 
+    public TileDecodeProfile getTileDecodeProfile() {
+        return decodeProfile;
+    }
+
+    // map views have to be created again to show the change
+    public void setTileDecodeProfile(TileDecodeProfile profile) {
+        if (profile == decodeProfile) {
+            return;
+        }
+        Log.i(LOG_TAG, "Tile decode profile " + profile);
+        decodeProfile = profile;
+        tileCache.clear();
+    }
+
+    public void releaseTile(Bitmap tile) {
+        bitmapPool.release(tile);
+    }
+
+    public TileBitmapCache getTileCache() {
+        return tileCache;
+    }
+
+    public TileBitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    public void trimMemory(int level) {
+        tileCache.trimMemory(level);
+        bitmapPool.trimMemory(level);
+        Log.i(LOG_TAG, "Memory trimmed at level " + level + ", tile cache: " + tileCache +
+                       ", bitmaps: " + bitmapPool);
+    }
+
     public int getFloorsCount() {
         return floorsCount;
     }
@@ -232,6 +494,13 @@ public class MapData extends Observable<MapData.MapDownloadUpdateAction> {
         return res;
     }
 
+    // levels subsampled by the decode profile aren't shown, TileView upscales the level below
+    public List<ZoomLevelInfo> getShownZoomLevels(int floor) {
+        List<ZoomLevelInfo> levels = getZoomLevels(floor);
+        int shown = Math.max(levels.size() - decodeProfile.getSubsampledLevels(), 1);
+        return levels.subList(0, Math.min(shown, levels.size()));
+    }
+
     public int getZoomLevelsCount(int floor) {
         return floorInfos.get(floor).getZoomLevelsResolutions().size();
     }
@@ -0,0 +1,230 @@
+package com.cnk.data.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+    All tiles of one floor in a single file, read through memory mapping.
+    Header with tile grid of every zoom level is followed by fixed-size index
+    (offset and length of every tile) and tile data, so lookup of a tile is
+    an array index and the tile is a slice of the mapped file, without opening files.
+
+    int magic, int version, int levels, {int columns, int rows} of every level,
+    {long offset, int length} of every tile, level by level, column by column.
+    Tile with length 0 is missing.
+ */
+public class TileAtlas {
+
+    private static final int MAGIC = 0x434e4b41;
+    private static final int VERSION = 1;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int[] columns;
+    private final int[] rows;
+    private final int[] firstEntries;
+
+    private TileAtlas(ByteBuffer buffer, int[] columns, int[] rows) {
+        this.buffer = buffer;
+        this.columns = columns;
+        this.rows = rows;
+        this.firstEntries = firstEntries(columns, rows);
+    }
+
+    // null when there is no atlas yet
+    public static TileAtlas open(String path) throws IOException {
+        File file = new File(path);
+        if (!file.exists()) {
+            return null;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try {
+            if (in.length() > Integer.MAX_VALUE) {
+                throw new IOException("Atlas " + path + " is too big");
+            }
+            // mapping stays valid after the file is closed
+            buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+        } finally {
+            in.close();
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Atlas " + path + " has unknown format");
+            }
+            int levels = buffer.getInt();
+            if (levels < 0 || headerSize(levels) > buffer.capacity()) {
+                throw new IOException("Atlas " + path + " is broken");
+            }
+            int[] columns = new int[levels];
+            int[] rows = new int[levels];
+            for (int level = 0; level < levels; level++) {
+                columns[level] = buffer.getInt();
+                rows[level] = buffer.getInt();
+            }
+            TileAtlas atlas = new TileAtlas(buffer, columns, rows);
+            int indexSize = atlas.firstEntries[levels] * INDEX_ENTRY_SIZE;
+            if (headerSize(levels) + indexSize > buffer.capacity()) {
+                throw new IOException("Atlas " + path + " is broken");
+            }
+            return atlas;
+        } catch (RuntimeException e) {
+            throw new IOException("Atlas " + path + " is broken", e);
+        }
+    }
+
+    public int getLevelsCount() {
+        return columns.length;
+    }
+
+    public boolean hasTile(int level, int x, int y) {
+        return getTile(level, x, y) != null;
+    }
+
+    // read-only slice of the mapped file, null when there is no such tile
+    public ByteBuffer getTile(int level, int x, int y) {
+        int entry = entry(columns, rows, firstEntries, level, x, y);
+        if (entry < 0) {
+            return null;
+        }
+        int position = headerSize(columns.length) + entry * INDEX_ENTRY_SIZE;
+        long offset = buffer.getLong(position);
+        int length = buffer.getInt(position + 8);
+        if (length <= 0 || offset + length > buffer.capacity()) {
+            return null;
+        }
+        // position of the shared buffer is never moved, so duplicates are safe between threads
+        ByteBuffer tile = buffer.duplicate();
+        tile.limit((int) offset + length);
+        tile.position((int) offset);
+        return tile.slice();
+    }
+
+    // number of the tile in the index, -1 when it's outside of the grid
+    private static int entry(int[] columns,
+                             int[] rows,
+                             int[] firstEntries,
+                             int level,
+                             int x,
+                             int y) {
+        if (level < 0 || level >= columns.length || x < 0 || x >= columns[level] || y < 0 ||
+            y >= rows[level]) {
+            return -1;
+        }
+        return firstEntries[level] + x * rows[level] + y;
+    }
+
+    private static int headerSize(int levels) {
+        return 3 * 4 + levels * 2 * 4;
+    }
+
+    // one more than levels, last one is the number of all tiles
+    private static int[] firstEntries(int[] columns, int[] rows) {
+        int[] firstEntries = new int[columns.length + 1];
+        for (int level = 0; level < columns.length; level++) {
+            firstEntries[level + 1] = firstEntries[level] + columns[level] * rows[level];
+        }
+        return firstEntries;
+    }
+
+    /*
+        Tiles are appended in any order and the index is written at the end,
+        into a temporary file renamed to the atlas, so readers see the old or the new one.
+     */
+    public static class Writer {
+        private final String path;
+        private final File tmp;
+        private final RandomAccessFile out;
+        private final int[] columns;
+        private final int[] rows;
+        private final int[] firstEntries;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final byte[] copyBuffer;
+
+        public Writer(String path, int[] columns, int[] rows) throws IOException {
+            this.path = path;
+            this.tmp = new File(path + ".tmp");
+            this.columns = columns;
+            this.rows = rows;
+            this.firstEntries = firstEntries(columns, rows);
+            int tiles = firstEntries[columns.length];
+            this.offsets = new long[tiles];
+            this.lengths = new int[tiles];
+            this.copyBuffer = new byte[BUFFER_SIZE];
+            tmp.getParentFile().mkdirs();
+            tmp.delete();
+            this.out = new RandomAccessFile(tmp, "rw");
+            out.seek(headerSize(columns.length) + tiles * INDEX_ENTRY_SIZE);
+        }
+
+        public void put(int level, int x, int y, InputStream in) throws IOException {
+            int entry = checkedEntry(level, x, y);
+            offsets[entry] = out.getFilePointer();
+            int read;
+            while ((read = in.read(copyBuffer)) != -1) {
+                out.write(copyBuffer, 0, read);
+            }
+            lengths[entry] = (int) (out.getFilePointer() - offsets[entry]);
+        }
+
+        public void put(int level, int x, int y, ByteBuffer tile) throws IOException {
+            int entry = checkedEntry(level, x, y);
+            offsets[entry] = out.getFilePointer();
+            ByteBuffer source = tile.duplicate();
+            while (source.hasRemaining()) {
+                int length = Math.min(source.remaining(), copyBuffer.length);
+                source.get(copyBuffer, 0, length);
+                out.write(copyBuffer, 0, length);
+            }
+            lengths[entry] = (int) (out.getFilePointer() - offsets[entry]);
+        }
+
+        private int checkedEntry(int level, int x, int y) {
+            int entry = entry(columns, rows, firstEntries, level, x, y);
+            if (entry < 0) {
+                throw new IllegalArgumentException("No tile " + x + ", " + y + " on level " +
+                                                   level);
+            }
+            return entry;
+        }
+
+        public void finish() throws IOException {
+            int size = headerSize(columns.length) + offsets.length * INDEX_ENTRY_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(size);
+            header.putInt(MAGIC).putInt(VERSION).putInt(columns.length);
+            for (int level = 0; level < columns.length; level++) {
+                header.putInt(columns[level]).putInt(rows[level]);
+            }
+            for (int entry = 0; entry < offsets.length; entry++) {
+                header.putLong(offsets[entry]).putInt(lengths[entry]);
+            }
+            try {
+                out.seek(0);
+                out.write(header.array());
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(new File(path))) {
+                throw new IOException("Saving atlas " + path + " failed");
+            }
+        }
+
+        public void abort() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            tmp.delete();
+        }
+    }
+}
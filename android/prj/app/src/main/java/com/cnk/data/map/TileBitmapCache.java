@@ -0,0 +1,113 @@
+package com.cnk.data.map;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+/*
+    Decoded map tiles bounded by bytes of their bitmaps, least recently used go first.
+    Cache is one of holders of bitmaps in the pool, evicted bitmap is reused only
+    when the map view doesn't draw it anymore. Bitmaps are never recycled.
+ */
+public class TileBitmapCache {
+
+    private final LruCache<Long, Bitmap> cache;
+    private final TileBitmapPool pool;
+    // counted here, so lookups of the prefetcher don't count
+    private int hitCount;
+    private int missCount;
+
+    public TileBitmapCache(int maxBytes, TileBitmapPool pool) {
+        this.pool = pool;
+        this.cache = new LruCache<Long, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted,
+                                        Long key,
+                                        Bitmap oldValue,
+                                        Bitmap newValue) {
+                pool.release(oldValue);
+            }
+        };
+    }
+
+    // found bitmap is retained for the caller
+    public Bitmap get(int floor, int zoomLevel, int row, int column) {
+        // bitmap mustn't be evicted and reused between lookup and retain
+        synchronized (pool) {
+            Bitmap bitmap = cache.get(key(floor, zoomLevel, row, column));
+            if (bitmap != null) {
+                pool.retain(bitmap);
+            }
+            countLookup(bitmap != null);
+            return bitmap;
+        }
+    }
+
+    // marks the tile as recently used, like get
+    public boolean contains(int floor, int zoomLevel, int row, int column) {
+        return cache.get(key(floor, zoomLevel, row, column)) != null;
+    }
+
+    public void put(int floor, int zoomLevel, int row, int column, Bitmap bitmap) {
+        pool.retain(bitmap);
+        cache.put(key(floor, zoomLevel, row, column), bitmap);
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    // level as in ComponentCallbacks2.onTrimMemory
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            cache.trimToSize(cache.maxSize() * 3 / 4);
+        }
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    public int getSizeBytes() {
+        return cache.size();
+    }
+
+    public int getMaxSizeBytes() {
+        return cache.maxSize();
+    }
+
+    @Override
+    public String toString() {
+        return "hits " + getHitCount() + ", misses " + getMissCount() + ", evictions " +
+               getEvictionCount() + ", " + getSizeBytes() + "/" + getMaxSizeBytes() + " bytes";
+    }
+
+    private synchronized void countLookup(boolean hit) {
+        if (hit) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+    }
+
+    private static Long key(int floor, int zoomLevel, int row, int column) {
+        return ((long) floor << 48) | ((long) zoomLevel << 40) | ((long) row << 20) | column;
+    }
+}
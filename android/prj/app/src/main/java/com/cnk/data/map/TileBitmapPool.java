@@ -0,0 +1,172 @@
+package com.cnk.data.map;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/*
+    Tiles are decoded into bitmaps no longer used by anyone, so panning doesn't allocate
+    a new bitmap for every tile and doesn't keep the garbage collector busy.
+    Every holder of a tile bitmap (the cache, the map view) retains it and releases it
+    when it's done, bitmap released by all holders is free for reuse by a tile of the same
+    size and config. All tiles of a zoom level have the same size, so reuse works also
+    before API 19, where inBitmap has to match the image exactly.
+ */
+public class TileBitmapPool {
+
+    private static final String LOG_TAG = "TileBitmapPool";
+    private static final int DECODE_BUFFER_SIZE = 16 * 1024;
+
+    private final int maxFreeBytes;
+    private final Map<String, LinkedList<Bitmap>> free;
+    private final Map<Bitmap, Integer> holders;
+    private final ThreadLocal<byte[]> decodeBuffers;
+    private int freeBytes;
+    private int decodeCount;
+    private int allocationCount;
+    private int reuseCount;
+
+    public TileBitmapPool(int maxFreeBytes) {
+        this.maxFreeBytes = maxFreeBytes;
+        this.free = new HashMap<>();
+        this.holders = new IdentityHashMap<>();
+        this.decodeBuffers = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[DECODE_BUFFER_SIZE];
+            }
+        };
+    }
+
+    // decoded bitmap is retained for the caller, null when data isn't an image
+    public Bitmap decode(ByteBuffer data, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inTempStorage = decodeBuffers.get();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(new ByteBufferInputStream(data.duplicate()), null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inSampleSize = 1;
+        options.inPreferredConfig = config;
+        // smooths gradients in RGB_565
+        options.inDither = config == Bitmap.Config.RGB_565;
+        Bitmap reused = take(key(options.outWidth, options.outHeight, options.inPreferredConfig));
+        options.inBitmap = reused;
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeStream(new ByteBufferInputStream(data.duplicate()),
+                                                null,
+                                                options);
+        } catch (IllegalArgumentException e) {
+            // decoder didn't accept the bitmap, e.g. image isn't a JPEG or PNG
+            Log.w(LOG_TAG, "Reusing bitmap failed: " + e.toString());
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeStream(new ByteBufferInputStream(data.duplicate()),
+                                                null,
+                                                options);
+        }
+
+        synchronized (this) {
+            decodeCount++;
+            if (reused != null && bitmap != reused) {
+                addFree(reused);
+            }
+            if (bitmap == null) {
+                return null;
+            }
+            if (bitmap == reused) {
+                reuseCount++;
+            } else {
+                allocationCount++;
+            }
+            retain(bitmap);
+        }
+        return bitmap;
+    }
+
+    public synchronized void retain(Bitmap bitmap) {
+        Integer count = holders.get(bitmap);
+        holders.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = holders.get(bitmap);
+        if (count == null) {
+            Log.w(LOG_TAG, "Released bitmap which isn't retained");
+            return;
+        }
+        if (count > 1) {
+            holders.put(bitmap, count - 1);
+            return;
+        }
+        holders.remove(bitmap);
+        addFree(bitmap);
+    }
+
+    // level as in ComponentCallbacks2.onTrimMemory
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            free.clear();
+            freeBytes = 0;
+        }
+    }
+
+    public synchronized int getDecodeCount() {
+        return decodeCount;
+    }
+
+    public synchronized int getAllocationCount() {
+        return allocationCount;
+    }
+
+    public synchronized int getReuseCount() {
+        return reuseCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "decodes " + decodeCount + ", new bitmaps " + allocationCount + ", reused " +
+               reuseCount + ", " + freeBytes + "/" + maxFreeBytes + " bytes free";
+    }
+
+    private synchronized Bitmap take(String key) {
+        LinkedList<Bitmap> bitmaps = free.get(key);
+        if (bitmaps == null || bitmaps.isEmpty()) {
+            return null;
+        }
+        Bitmap bitmap = bitmaps.removeFirst();
+        freeBytes -= bitmap.getByteCount();
+        return bitmap;
+    }
+
+    // pool over its limit lets the garbage collector take the bitmap
+    private void addFree(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled() ||
+            freeBytes + bitmap.getByteCount() > maxFreeBytes) {
+            return;
+        }
+        String key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        LinkedList<Bitmap> bitmaps = free.get(key);
+        if (bitmaps == null) {
+            bitmaps = new LinkedList<>();
+            free.put(key, bitmaps);
+        }
+        bitmaps.add(bitmap);
+        freeBytes += bitmap.getByteCount();
+    }
+
+    private static String key(int width, int height, Bitmap.Config config) {
+        return width + "x" + height + " " + config;
+    }
+}
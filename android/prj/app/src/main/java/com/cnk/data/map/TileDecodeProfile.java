@@ -0,0 +1,49 @@
+package com.cnk.data.map;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/*
+    How much memory decoded tiles take. Floor plans are mostly flat colours, so RGB_565
+    halves the memory without visible loss. TileView draws tile bitmaps without scaling,
+    so a subsampled level means showing the level below it, which has exactly the pixels
+    of the level decoded with inSampleSize 2, upscaled by TileView.
+ */
+public enum TileDecodeProfile {
+    QUALITY(Bitmap.Config.ARGB_8888, 0),
+    BALANCED(Bitmap.Config.RGB_565, 0),
+    // the most detailed zoom level is subsampled
+    LOW_MEMORY(Bitmap.Config.RGB_565, 1);
+
+    // heap of the application, it has largeHeap set
+    private static final int LOW_MEMORY_CLASS_MB = 128;
+
+    private final Bitmap.Config config;
+    private final int subsampledLevels;
+
+    TileDecodeProfile(Bitmap.Config config, int subsampledLevels) {
+        this.config = config;
+        this.subsampledLevels = subsampledLevels;
+    }
+
+    public static TileDecodeProfile forDevice(Context context) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT &&
+                         activityManager.isLowRamDevice();
+        if (lowRam || activityManager.getLargeMemoryClass() < LOW_MEMORY_CLASS_MB) {
+            return LOW_MEMORY;
+        }
+        return BALANCED;
+    }
+
+    public Bitmap.Config getConfig() {
+        return config;
+    }
+
+    public int getSubsampledLevels() {
+        return subsampledLevels;
+    }
+}
@@ -0,0 +1,306 @@
+package com.cnk.data.map;
+
+import android.util.Log;
+
+import com.cnk.communication.Deadline;
+import com.cnk.data.FileHandler;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/*
+    Downloads map tiles with a pool of workers, so refresh is limited by bandwidth
+    and not by latency of each request. Connections to one host are limited,
+    failed tile is retried after growing, randomized wait. Progress is reported
+    on the calling thread after each saved or revalidated tile.
+    Tiles can also come in packs, archives unpacked while they're downloaded.
+    Tiles of a pack which failed are downloaded one by one.
+ */
+public class TileDownloader {
+
+    public interface ProgressAction {
+        void doOnProgress(Tile done, TileFetcher.Result result, int doneCount, int all);
+    }
+
+    public static class Tile {
+        private final String url;
+        private final String path;
+        // of the tile saved before, it's downloaded only when it changed
+        private final String validator;
+
+        public Tile(String url, String path) {
+            this(url, path, null);
+        }
+
+        public Tile(String url, String path, String validator) {
+            this.url = url;
+            this.path = path;
+            this.validator = validator;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getValidator() {
+            return validator;
+        }
+    }
+
+    public static class Pack {
+        private final String url;
+        // entry name -> tile, other entries are skipped
+        private final Map<String, Tile> tiles;
+
+        public Pack(String url) {
+            this.url = url;
+            this.tiles = new HashMap<>();
+        }
+
+        public void add(String entryName, Tile tile) {
+            tiles.put(entryName, tile);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Map<String, Tile> getTiles() {
+            return tiles;
+        }
+    }
+
+    // passed from workers to the calling thread
+    private static class Event {
+        private final Tile done;
+        private final TileFetcher.Result result;
+        private final boolean finished;
+        private final Exception failure;
+        private final List<Tile> fallback;
+
+        private Event(Tile done,
+                      TileFetcher.Result result,
+                      boolean finished,
+                      Exception failure,
+                      List<Tile> fallback) {
+            this.done = done;
+            this.result = result;
+            this.finished = finished;
+            this.failure = failure;
+            this.fallback = fallback;
+        }
+    }
+
+    private static final String LOG_TAG = "TileDownloader";
+    private static final TileFetcher.Result FROM_PACK = new TileFetcher.Result(true, null);
+
+    private final TileFetcher fetcher;
+    private final int workers;
+    private final int connectionsPerHost;
+    private final int attempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final Map<String, Semaphore> hostPermits;
+    private final Random random;
+
+    public TileDownloader(TileFetcher fetcher,
+                          int workers,
+                          int connectionsPerHost,
+                          int attempts,
+                          long initialBackoffMillis,
+                          long maxBackoffMillis) {
+        this.fetcher = fetcher;
+        this.workers = workers;
+        this.connectionsPerHost = connectionsPerHost;
+        this.attempts = attempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.hostPermits = new HashMap<>();
+        this.random = new Random();
+    }
+
+    public void downloadAll(List<Tile> tiles, Deadline deadline, ProgressAction progress)
+            throws IOException {
+        downloadAll(tiles, new ArrayList<>(), deadline, progress);
+    }
+
+    // first tile which failed for good stops the whole download
+    public void downloadAll(List<Tile> tiles,
+                            List<Pack> packs,
+                            Deadline deadline,
+                            ProgressAction progress) throws IOException {
+        int all = tiles.size();
+        for (Pack pack : packs) {
+            all += pack.getTiles().size();
+        }
+        if (all == 0) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        int running = 0;
+        int doneCount = 0;
+        try {
+            for (Tile tile : tiles) {
+                submit(executor, events, tile, deadline);
+                running++;
+            }
+            for (Pack pack : packs) {
+                executor.execute(() -> {
+                    try {
+                        List<Tile> fallback = downloadPack(pack, deadline, events);
+                        events.add(new Event(null, null, true, null, fallback));
+                    } catch (Exception e) {
+                        events.add(new Event(null, null, true, e, null));
+                    }
+                });
+                running++;
+            }
+
+            while (running > 0) {
+                Event event = events.take();
+                if (event.done != null) {
+                    doneCount++;
+                    progress.doOnProgress(event.done, event.result, doneCount, all);
+                }
+                if (!event.finished) {
+                    continue;
+                }
+                running--;
+                if (event.failure != null) {
+                    throw asIOException(event.failure);
+                }
+                if (event.fallback != null) {
+                    for (Tile tile : event.fallback) {
+                        submit(executor, events, tile, deadline);
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Tiles download interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static IOException asIOException(Exception e) {
+        if (e instanceof IOException) {
+            return (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        return new IOException(e);
+    }
+
+    private void submit(ExecutorService executor,
+                        BlockingQueue<Event> events,
+                        Tile tile,
+                        Deadline deadline) {
+        executor.execute(() -> {
+            try {
+                TileFetcher.Result result = download(tile, deadline);
+                events.add(new Event(tile, result, true, null, null));
+            } catch (Exception e) {
+                events.add(new Event(null, null, true, e, null));
+            }
+        });
+    }
+
+    // one attempt, returns tiles which have to be downloaded one by one
+    private List<Tile> downloadPack(Pack pack, Deadline deadline, BlockingQueue<Event> events)
+            throws IOException, InterruptedException {
+        Map<String, Tile> remaining = new HashMap<>(pack.getTiles());
+        Semaphore permits = getHostPermits(pack.getUrl());
+        deadline.check();
+        permits.acquire();
+        try {
+            ZipInputStream in = new ZipInputStream(fetcher.open(pack.getUrl(), deadline));
+            try {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    Tile tile = remaining.get(entry.getName());
+                    if (tile != null) {
+                        FileHandler.getInstance().copyToFile(in, tile.getPath());
+                        remaining.remove(entry.getName());
+                        events.add(new Event(tile, FROM_PACK, false, null, null));
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            // no fallback after cancel or when there is no time left
+            deadline.check();
+            Log.i(LOG_TAG, "Downloading " + pack.getUrl() + " failed: " + e.toString());
+        } finally {
+            permits.release();
+        }
+        if (!remaining.isEmpty()) {
+            Log.i(LOG_TAG, remaining.size() + " tiles of " + pack.getUrl() +
+                           " are downloaded one by one");
+        }
+        return new ArrayList<>(remaining.values());
+    }
+
+    private TileFetcher.Result download(Tile tile, Deadline deadline)
+            throws IOException, InterruptedException {
+        Semaphore permits = getHostPermits(tile.getUrl());
+        for (int attempt = 1; ; attempt++) {
+            deadline.check();
+            permits.acquire();
+            try {
+                return fetcher.fetch(tile.getUrl(), tile.getPath(), tile.getValidator(), deadline);
+            } catch (IOException e) {
+                // no retries after cancel or when there is no time left
+                deadline.check();
+                if (attempt >= attempts) {
+                    Log.e(LOG_TAG, "Downloading " + tile.getUrl() + " failed after " + attempts +
+                                   " attempts");
+                    throw e;
+                }
+                Log.i(LOG_TAG, "Downloading " + tile.getUrl() + " failed, retrying");
+            } finally {
+                permits.release();
+            }
+            Thread.sleep(Math.min(backoffMillis(attempt), deadline.remainingMillis()));
+        }
+    }
+
+    // exponential, randomized so failed workers don't come back all at once
+    private long backoffMillis(int attempt) {
+        long backoff = initialBackoffMillis << Math.min(attempt - 1, 16);
+        backoff = Math.min(backoff, maxBackoffMillis);
+        return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    // urls are host[:port]/path, without protocol
+    private synchronized Semaphore getHostPermits(String url) {
+        int slash = url.indexOf('/');
+        String host = slash >= 0 ? url.substring(0, slash) : url;
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(connectionsPerHost);
+            hostPermits.put(host, permits);
+        }
+        return permits;
+    }
+}
@@ -0,0 +1,158 @@
+package com.cnk.data.map;
+
+import android.util.Log;
+
+import com.cnk.communication.Deadline;
+import com.cnk.data.FileHandler;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/*
+    HTTP client of the map tiles server. Connections are kept alive and reused by the pool
+    of HttpURLConnection, as long as every response is read to the end and closed, which is
+    done here also for errors. Number of connections open at once is limited by callers.
+    Tile saved before can be revalidated with its validator (ETag or Last-Modified), server
+    answers 304 without the tile when it didn't change.
+    Connect and read timeouts are what is left of the deadline when connecting, the read
+    timeout bounds each read, not the whole response. Cancelling the deadline disconnects.
+ */
+public class TileFetcher {
+
+    public static class Result {
+        private final boolean modified;
+        private final String validator;
+
+        Result(boolean modified, String validator) {
+            this.modified = modified;
+            this.validator = validator;
+        }
+
+        // false when the tile saved before is still valid and nothing was written
+        public boolean isModified() {
+            return modified;
+        }
+
+        // null when the server sent neither ETag nor Last-Modified
+        public String getValidator() {
+            return validator;
+        }
+    }
+
+    private static final String LOG_TAG = "TileFetcher";
+    private static final String PROTOCOL = "http://";
+    private static final String ETAG_PREFIX = "etag:";
+    private static final String LAST_MODIFIED_PREFIX = "modified:";
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
+    // urls are host[:port]/path, without protocol
+    public Result fetch(String url, String path, String validator, Deadline deadline)
+            throws IOException {
+        HttpURLConnection connection = connect(url, validator, deadline);
+        Deadline.Abort abort = connection::disconnect;
+        deadline.attach(abort);
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && validator != null) {
+                drain(connection.getInputStream());
+                String newValidator = getValidator(connection);
+                return new Result(false, newValidator != null ? newValidator : validator);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                drain(connection.getErrorStream());
+                throw new IOException("Downloading " + url + " failed with HTTP " + code);
+            }
+
+            InputStream in = connection.getInputStream();
+            long written;
+            try {
+                written = FileHandler.getInstance().copyToFile(in, path);
+            } finally {
+                in.close();
+            }
+            int length = connection.getContentLength();
+            if (length >= 0 && written != length) {
+                throw new IOException("Downloading " + url + " failed, got " + written + " of " +
+                                      length + " bytes");
+            }
+            return new Result(true, getValidator(connection));
+        } finally {
+            deadline.detach(abort);
+        }
+    }
+
+    // body of the response, closing it gives the connection back to the pool
+    public InputStream open(String url, Deadline deadline) throws IOException {
+        HttpURLConnection connection = connect(url, null, deadline);
+        Deadline.Abort abort = connection::disconnect;
+        deadline.attach(abort);
+        InputStream in;
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                drain(connection.getErrorStream());
+                throw new IOException("Downloading " + url + " failed with HTTP " + code);
+            }
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            deadline.detach(abort);
+            throw e;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public void close() throws IOException {
+                deadline.detach(abort);
+                super.close();
+            }
+        };
+    }
+
+    private HttpURLConnection connect(String url, String validator, Deadline deadline)
+            throws IOException {
+        Log.i(LOG_TAG, "Downloading " + url + (validator != null ? " if changed" : ""));
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL(PROTOCOL + url).openConnection();
+        int timeout = deadline.timeoutMillis();
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setUseCaches(false);
+        if (validator != null && validator.startsWith(ETAG_PREFIX)) {
+            connection.setRequestProperty("If-None-Match",
+                                          validator.substring(ETAG_PREFIX.length()));
+        } else if (validator != null && validator.startsWith(LAST_MODIFIED_PREFIX)) {
+            connection.setRequestProperty("If-Modified-Since",
+                                          validator.substring(LAST_MODIFIED_PREFIX.length()));
+        }
+        return connection;
+    }
+
+    private static String getValidator(HttpURLConnection connection) {
+        String etag = connection.getHeaderField("ETag");
+        if (etag != null) {
+            return ETAG_PREFIX + etag;
+        }
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (lastModified != null) {
+            return LAST_MODIFIED_PREFIX + lastModified;
+        }
+        return null;
+    }
+
+    // connection is reused only after its response was read to the end
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+            while (in.read(buffer) != -1) {
+                // skipped
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.cnk.data.map;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Identity of tiles stored on the device, tile filename -> hash from the server.
+    Kept as text file with one tile per line, so tiles can be appended one by one
+    while downloading.
+ */
+public class TileManifest {
+
+    private static final char SEPARATOR = '\t';
+    private static final String ENCODING = "UTF-8";
+
+    private final Map<String, String> hashes;
+
+    public TileManifest() {
+        hashes = new HashMap<>();
+    }
+
+    // missing file is an empty manifest, later lines override earlier ones
+    public static TileManifest load(String path) throws IOException {
+        TileManifest manifest = new TileManifest();
+        BufferedReader reader;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(path), ENCODING));
+        } catch (FileNotFoundException e) {
+            return manifest;
+        }
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                // line cut by a crash while it was appended
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue;
+                }
+                manifest.hashes.put(line.substring(0, separator), line.substring(separator + 1));
+            }
+        } finally {
+            reader.close();
+        }
+        return manifest;
+    }
+
+    public static void append(String path, String filename, String hash) throws IOException {
+        File file = new File(path);
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), ENCODING);
+        try {
+            writer.write(filename + SEPARATOR + hash + "\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    public String get(String filename) {
+        return hashes.get(filename);
+    }
+
+    public void put(String filename, String hash) {
+        hashes.put(filename, hash);
+    }
+
+    // written next to the old one first, so crash leaves the old or the new manifest
+    public void save(String path) throws IOException {
+        File file = new File(path);
+        File tmp = new File(path + ".tmp");
+        file.getParentFile().mkdirs();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), ENCODING);
+        try {
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                writer.write(entry.getKey() + SEPARATOR + entry.getValue() + "\n");
+            }
+        } finally {
+            writer.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Saving " + path + " failed");
+        }
+    }
+}
@@ -5,15 +5,29 @@ import java.util.ArrayList;
 public class ZoomLevel {
 
     ArrayList<ArrayList<String>> tilesFiles;
+    // null when server doesn't send them
+    ArrayList<ArrayList<String>> tilesHashes;
+    // all tiles in one archive, null when server doesn't pack them
+    private String packUrl;
     private Resolution scaledSize;
     private Resolution tileSize;
 
     public ZoomLevel(Resolution scaledSize,
                      Resolution tileSize,
                      ArrayList<ArrayList<String>> tilesFiles) {
+        this(scaledSize, tileSize, tilesFiles, null, null);
+    }
+
+    public ZoomLevel(Resolution scaledSize,
+                     Resolution tileSize,
+                     ArrayList<ArrayList<String>> tilesFiles,
+                     ArrayList<ArrayList<String>> tilesHashes,
+                     String packUrl) {
         this.scaledSize = scaledSize;
         this.tileSize = tileSize;
         this.tilesFiles = tilesFiles;
+        this.tilesHashes = tilesHashes;
+        this.packUrl = packUrl;
     }
 
     public Resolution getScaledSize() {
@@ -30,4 +44,15 @@ public class ZoomLevel {
         return tilesFiles;
     }
 
+    public String getPackUrl() {
+        return packUrl;
+    }
+
+    public String getTileHash(int x, int y) {
+        if (tilesHashes == null) {
+            return null;
+        }
+        return tilesHashes.get(x).get(y);
+    }
+
 }
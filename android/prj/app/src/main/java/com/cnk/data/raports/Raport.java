@@ -7,13 +7,20 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Raport implements Serializable {
+    // computed for the class before client id was added, raports saved earlier still load
+    private static final long serialVersionUID = -5000041033938805034L;
+
     public enum State {
         IN_PROGRESS,
         READY_TO_SEND,
-        SENT
+        SENT,
+        // server refused it as invalid, kept on the device but never sent again
+        REJECTED
     }
 
     private Integer id;
+    // generated when raport is started, server saves raport with given client id only once
+    private String clientId;
     private Integer experimentId;
     private List<RaportEvent> history;
     private SurveyAnswers preSurveyAnswers;
@@ -26,11 +33,13 @@ public class Raport implements Serializable {
     }
 
     public Raport(Integer id,
+                  String clientId,
                   Timestamp startDate,
                   Integer experimentId,
                   SurveyAnswers preSurveyAnswers,
                   SurveyAnswers postSurveyAnswers) {
         this.id = id;
+        this.clientId = clientId;
         this.startDate = startDate;
         this.experimentId = experimentId;
         this.preSurveyAnswers = preSurveyAnswers;
@@ -55,6 +64,11 @@ public class Raport implements Serializable {
         this.id = id;
     }
 
+    // null for raports started before client ids were introduced
+    public String getClientId() {
+        return clientId;
+    }
+
     public Integer getExperimentId() {
         return experimentId;
     }
@@ -79,6 +93,10 @@ public class Raport implements Serializable {
         state = State.SENT;
     }
 
+    public void markAsRejected() {
+        state = State.REJECTED;
+    }
+
     public void setEndDate(Timestamp d) {
         endDate = d;
     }
@@ -9,6 +9,7 @@ import com.cnk.database.models.RaportFile;
 import com.cnk.database.realm.RaportFileRealm;
 import com.cnk.exceptions.DatabaseLoadException;
 import com.cnk.notificators.Observable;
+import com.cnk.notificators.ProgressChannel;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -19,17 +20,22 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ReadyRaports extends Observable<ReadyRaports.RaportsUpdateAction> {
+    // called on the main thread
     public interface RaportsUpdateAction {
         void doOnUpdate(int raportsQueueSize);
     }
 
     private static final String LOG_TAG = "ReadyRaports";
+    // uploading a batch changes the queue size after every raport
+    private static final long QUEUE_UPDATE_INTERVAL_MILLIS = 200;
     private static ReadyRaports instance;
     private ConcurrentHashMap<Raport, RaportId> readyRaports;
     private DatabaseHelper dbHelper;
+    private ProgressChannel queueUpdates;
 
     public ReadyRaports() {
         readyRaports = new ConcurrentHashMap<>();
+        queueUpdates = new ProgressChannel(QUEUE_UPDATE_INTERVAL_MILLIS);
     }
 
     public static ReadyRaports getInstance() {
@@ -80,23 +86,57 @@ public class ReadyRaports extends Observable<ReadyRaports.RaportsUpdateAction> {
         return result;
     }
 
+    public int getReadyRaportsCount() {
+        return readyRaports.size();
+    }
+
     // doesn't modify files, only modifies database entries which are used by one thread - uploading raports
     public void setServerId(Raport raport, Integer serverId) {
         readyRaports.put(raport, new RaportId(serverId));
         dbHelper.changeRaportServerId(raport.getId(), serverId);
     }
 
+    // same as setServerId, but all ids are saved in one database transaction
+    public void setServerIds(Map<Raport, Integer> serverIds) {
+        Map<Integer, Integer> dbIds = new HashMap<>();
+        for (Map.Entry<Raport, Integer> entry : serverIds.entrySet()) {
+            readyRaports.put(entry.getKey(), new RaportId(entry.getValue()));
+            dbIds.put(entry.getKey().getId(), entry.getValue());
+        }
+        dbHelper.changeRaportsServerIds(dbIds);
+    }
+
     // only modifies database entries which are used by one thread - uploading raports
     public void markRaportAsSent(Raport raport) {
         raport.markAsSent();
         readyRaports.remove(raport);
         dbHelper.changeRaportState(raport.getId(), RaportFileRealm.SENT);
-        notifyObservers(readyRaports.size());
+        postQueueSize();
+    }
+
+    // same as markRaportAsSent, but whole batch is marked in one database transaction
+    public void markRaportsAsSent(List<Raport> raports) {
+        List<Integer> ids = new ArrayList<>();
+        for (Raport raport : raports) {
+            raport.markAsSent();
+            readyRaports.remove(raport);
+            ids.add(raport.getId());
+        }
+        dbHelper.changeRaportsState(ids, RaportFileRealm.SENT);
+        postQueueSize();
+    }
+
+    // raport the server refused is taken out of the queue, so it doesn't block the rest
+    public void markRaportAsRejected(Raport raport) {
+        raport.markAsRejected();
+        readyRaports.remove(raport);
+        dbHelper.changeRaportState(raport.getId(), RaportFileRealm.REJECTED);
+        postQueueSize();
     }
 
     public void addNewReadyRaport(Raport newRaport) {
         readyRaports.put(newRaport, new RaportId(null));
-        notifyObservers(readyRaports.size());
+        postQueueSize();
     }
 
     public void notifyObservers(Integer newRaportsQueueSize) {
@@ -110,6 +150,11 @@ public class ReadyRaports extends Observable<ReadyRaports.RaportsUpdateAction> {
         }
     }
 
+    // size is read when delivered, so updates posted by different threads can't reorder it
+    private void postQueueSize() {
+        queueUpdates.post(() -> notifyObservers(readyRaports.size()));
+    }
+
     private class RaportId {
         private Integer id;
         public RaportId(Integer id) {
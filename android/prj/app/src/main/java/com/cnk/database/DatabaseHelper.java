@@ -19,6 +19,7 @@ import com.cnk.exceptions.InternalDatabaseError;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import io.realm.Realm;
 import io.realm.RealmResults;
@@ -90,6 +91,10 @@ public class DatabaseHelper {
         realm.copyToRealmOrUpdate(version);
     }
 
+    private void clearVersion(Realm realm, Version ver) {
+        realm.where(VersionRealm.class).equalTo("item", ver.toString()).findAll().clear();
+    }
+
     public ZoomLevelResolution getZoomLevelResolution(Integer floor, Integer zoomLevel) {
         Value<ZoomLevelResolution> res = new Value<>();
         inTransaction((realm) -> {
@@ -194,14 +199,32 @@ public class DatabaseHelper {
         return exhibits;
     }
 
-    public void clearAllExhibits() {
-        inTransaction((realm) -> realm.clear(ExhibitRealm.class));
+    public List<Integer> getAllExhibitIds() {
+        List<Integer> ids = new ArrayList<>();
+        inTransaction((realm) -> {
+            for (ExhibitRealm er : realm.where(ExhibitRealm.class).findAll()) {
+                ids.add(er.getId());
+            }
+        });
+        return ids;
     }
 
-    public void addOrUpdateExhibits(Integer versionNum, Iterable<Exhibit> exhibits) {
+    // version is only stored when resyncCursor is null, otherwise resync is still in progress
+    public void applyExhibitChanges(Integer versionNum,
+                                    Integer resyncCursor,
+                                    Iterable<Exhibit> changed,
+                                    Iterable<Integer> removedIds) {
         inTransaction((realm) -> {
-            realm.copyToRealmOrUpdate(RealmFactory.getInstance().toRealmList(exhibits));
-            setVersion(realm, Version.EXHIBITS, versionNum);
+            realm.copyToRealmOrUpdate(RealmFactory.getInstance().toRealmList(changed));
+            for (Integer id : removedIds) {
+                realm.where(ExhibitRealm.class).equalTo("id", id).findAll().clear();
+            }
+            if (resyncCursor == null) {
+                setVersion(realm, Version.EXHIBITS, versionNum);
+                clearVersion(realm, Version.EXHIBITS_RESYNC);
+            } else {
+                setVersion(realm, Version.EXHIBITS_RESYNC, resyncCursor);
+            }
         });
     }
 
@@ -243,6 +266,17 @@ public class DatabaseHelper {
         });
     }
 
+    public void changeRaportsState(List<Integer> ids, String newState) {
+        inTransaction((realm) -> {
+            for (Integer id : ids) {
+                RaportFileRealm entry =
+                        realm.where(RaportFileRealm.class).equalTo("id", id).findFirst();
+                entry.setState(newState);
+                realm.copyToRealmOrUpdate(entry);
+            }
+        });
+    }
+
     public void changeRaportServerId(Integer id, Integer serverId) {
         inTransaction((realm) -> {
             RaportFileRealm entry =
@@ -251,4 +285,15 @@ public class DatabaseHelper {
             realm.copyToRealmOrUpdate(entry);
         });
     }
+
+    public void changeRaportsServerIds(Map<Integer, Integer> serverIds) {
+        inTransaction((realm) -> {
+            for (Map.Entry<Integer, Integer> e : serverIds.entrySet()) {
+                RaportFileRealm entry =
+                        realm.where(RaportFileRealm.class).equalTo("id", e.getKey()).findFirst();
+                entry.setServerId(e.getValue());
+                realm.copyToRealmOrUpdate(entry);
+            }
+        });
+    }
 }
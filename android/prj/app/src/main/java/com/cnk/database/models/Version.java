@@ -1,7 +1,9 @@
 package com.cnk.database.models;
 
 public enum Version {
-    EXHIBITS("Exhibits");
+    EXHIBITS("Exhibits"),
+    // cursor of resync which hasn't finished yet
+    EXHIBITS_RESYNC("ExhibitsResync");
 
     private String code;
 
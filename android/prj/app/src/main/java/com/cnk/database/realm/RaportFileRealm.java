@@ -8,11 +8,12 @@ public class RaportFileRealm extends RealmObject {
     public static final String IN_PROGRESS = "IN_PRGRESS";
     public static final String SENT = "SENT";
     public static final String READY_TO_SEND = "READY_TO_SEND";
+    public static final String REJECTED = "REJECTED";
 
     @PrimaryKey private Integer id;
     private Integer serverId;
     private String fileName;
-    // "READY_TO_SEND", "SENT", "IN_PROGRESS", enums are not supported
+    // "READY_TO_SEND", "SENT", "IN_PROGRESS", "REJECTED", enums are not supported
     private String state;
 
     public Integer getId() {
@@ -0,0 +1,12 @@
+package com.cnk.exceptions;
+
+import java.io.IOException;
+
+public class DeadlineExceededException extends IOException {
+    public DeadlineExceededException() {
+    }
+
+    public DeadlineExceededException(String detailMessage) {
+        super(detailMessage);
+    }
+}
@@ -0,0 +1,63 @@
+package com.cnk.notificators;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/*
+    Progress updates from background threads delivered on the main thread, at most one per
+    interval. Update posted while another waits replaces it, so only the latest state is
+    delivered and the main looper gets one message per interval instead of one per update.
+    The last update is always delivered, finish delivers it without waiting.
+ */
+public class ProgressChannel {
+
+    private final long minIntervalMillis;
+    private final Handler handler;
+    private final Runnable deliver;
+    private Runnable pending;
+    private boolean scheduled;
+    private long lastDeliveryMillis;
+
+    public ProgressChannel(long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.handler = new Handler(Looper.getMainLooper());
+        this.deliver = this::deliver;
+        this.lastDeliveryMillis = -minIntervalMillis;
+    }
+
+    public synchronized void post(Runnable update) {
+        pending = update;
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        long wait = lastDeliveryMillis + minIntervalMillis - SystemClock.uptimeMillis();
+        if (wait > 0) {
+            handler.postDelayed(deliver, wait);
+        } else {
+            handler.post(deliver);
+        }
+    }
+
+    // delivered without waiting for the interval
+    public synchronized void finish(Runnable update) {
+        pending = update;
+        handler.removeCallbacks(deliver);
+        scheduled = true;
+        handler.post(deliver);
+    }
+
+    private void deliver() {
+        Runnable update;
+        synchronized (this) {
+            update = pending;
+            pending = null;
+            scheduled = false;
+            lastDeliveryMillis = SystemClock.uptimeMillis();
+        }
+        if (update != null) {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.cnk.tools;
+
+import com.cnk.communication.thrift.Action;
+import com.cnk.communication.thrift.Exhibit;
+import com.cnk.communication.thrift.Experiment;
+import com.cnk.communication.thrift.Frame;
+import com.cnk.communication.thrift.MapFrame;
+import com.cnk.communication.thrift.MapImage;
+import com.cnk.communication.thrift.MultipleChoiceQuestion;
+import com.cnk.communication.thrift.MultipleChoiceQuestionAnswer;
+import com.cnk.communication.thrift.MultipleChoiceQuestionOption;
+import com.cnk.communication.thrift.QuestionType;
+import com.cnk.communication.thrift.QuestionsList;
+import com.cnk.communication.thrift.RawReport;
+import com.cnk.communication.thrift.RawReportEvent;
+import com.cnk.communication.thrift.SimpleQuestion;
+import com.cnk.communication.thrift.SimpleQuestionAnswer;
+import com.cnk.communication.thrift.SimpleQuestionAnswerType;
+import com.cnk.communication.thrift.Size;
+import com.cnk.communication.thrift.SortQuestion;
+import com.cnk.communication.thrift.SortQuestionAnswer;
+import com.cnk.communication.thrift.SortQuestionOption;
+import com.cnk.communication.thrift.SurveyAnswers;
+import com.cnk.communication.thrift.Time;
+import com.cnk.communication.thrift.ZoomLevel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+    Server API data shaped like production data: maps are tiled the same way as
+    by the server (MapCommands::zoomLevels), reports resemble a surveyor's visit
+    and answer the survey of the experiment.
+ */
+public class Fixtures {
+
+    public static final String TILES_URL_PREFIX = "192.168.0.18:8000/static/map_tiles/";
+    // name of the pack of a zoom level, same as made by the server
+    public static final String PACK_FILENAME = "tiles.zip";
+    // {scaled size, tile size} of each zoom level
+    private static final int[][] ZOOM_LEVELS = {{1024, 64}, {2048, 128}, {4096, 256}, {8192, 512}};
+    public static final int EXHIBITS_COUNT = 200;
+    private static final int ACTIONS_COUNT = 12;
+    private static final int BREAK_ACTIONS_COUNT = 4;
+    private static final String[] SIMPLE_ANSWERS = {"34", "Warszawa", "nauczyciel", "3", "tak"};
+    private static final int MULTIPLE_CHOICE_QUESTIONS = 3;
+    private static final int MULTIPLE_CHOICE_OPTIONS = 6;
+    private static final int SORT_QUESTIONS = 2;
+    private static final int SORT_OPTIONS = 5;
+
+    public static Map<Integer, MapImage> mapImages(int floors) {
+        return mapImages(floors, TILES_URL_PREFIX);
+    }
+
+    public static Map<Integer, MapImage> mapImages(int floors, String tilesUrlPrefix) {
+        Map<Integer, MapImage> images = new HashMap<>();
+        for (int floor = 0; floor < floors; floor++) {
+            images.put(floor, mapImage(floor, tilesUrlPrefix));
+        }
+        return images;
+    }
+
+    public static MapImage mapImage(int floor) {
+        return mapImage(floor, TILES_URL_PREFIX);
+    }
+
+    public static MapImage mapImage(int floor, String tilesUrlPrefix) {
+        List<ZoomLevel> zoomLevels = new ArrayList<>();
+        for (int level = 0; level < ZOOM_LEVELS.length; level++) {
+            int scaledSize = ZOOM_LEVELS[level][0];
+            int tileSize = ZOOM_LEVELS[level][1];
+            int tilesInRow = scaledSize / tileSize;
+
+            List<List<String>> urls = new ArrayList<>();
+            List<List<String>> hashes = new ArrayList<>();
+            for (int x = 0; x < tilesInRow; x++) {
+                List<String> column = new ArrayList<>();
+                List<String> columnHashes = new ArrayList<>();
+                for (int y = 0; y < tilesInRow; y++) {
+                    column.add(tileUrl(tilesUrlPrefix, floor, level + 1, x, y));
+                    columnHashes.add(tileHash(floor, level + 1, x, y));
+                }
+                urls.add(column);
+                hashes.add(columnHashes);
+            }
+            ZoomLevel zoomLevel = new ZoomLevel(new Size(scaledSize, scaledSize),
+                                                new Size(tileSize, tileSize),
+                                                urls);
+            zoomLevel.setTilesHashes(hashes);
+            zoomLevel.setPackUrl(packUrl(tilesUrlPrefix, floor, level + 1));
+            zoomLevels.add(zoomLevel);
+        }
+        int maxSize = ZOOM_LEVELS[ZOOM_LEVELS.length - 1][0];
+        return new MapImage(floor, new Size(maxSize, maxSize), zoomLevels);
+    }
+
+    // level as in tile urls, starting from 1, 0 when there is no such level
+    public static int tileSize(int level) {
+        if (level < 1 || level > ZOOM_LEVELS.length) {
+            return 0;
+        }
+        return ZOOM_LEVELS[level - 1][1];
+    }
+
+    // level as in tile urls, starting from 1
+    public static int tilesInRow(int level) {
+        return ZOOM_LEVELS[level - 1][0] / ZOOM_LEVELS[level - 1][1];
+    }
+
+    public static String tileUrl(String prefix, int floor, int level, int x, int y) {
+        return prefix + floor + "/" + level + "/" + x + "/" + y + ".jpg";
+    }
+
+    public static String packUrl(String prefix, int floor, int level) {
+        return prefix + floor + "/" + level + "/" + PACK_FILENAME;
+    }
+
+    // shaped like hashes of the server (size-crc32)
+    public static String tileHash(int floor, int level, int x, int y) {
+        int crc = (floor * 31 + level) * 1000003 + x * 1009 + y;
+        return String.format("%d-%08x", 20000 + level * 1000, crc);
+    }
+
+    // most exhibits have a frame on one of the floors
+    public static Exhibit exhibit(int exhibitId, int floors, Random random) {
+        Exhibit exhibit =
+                new Exhibit(exhibitId, "Eksponat " + exhibitId, random.nextInt(0x1000000));
+        if (random.nextInt(10) != 0) {
+            int maxSize = ZOOM_LEVELS[ZOOM_LEVELS.length - 1][0];
+            Frame frame = new Frame(random.nextInt(maxSize - 400),
+                                    random.nextInt(maxSize - 400),
+                                    new Size(200 + random.nextInt(200), 200 + random.nextInt(200)));
+            exhibit.setMapFrame(new MapFrame(frame, random.nextInt(floors)));
+        }
+        return exhibit;
+    }
+
+    public static Experiment experiment(int experimentId) {
+        List<Action> exhibitActions = new ArrayList<>();
+        for (int i = 0; i < ACTIONS_COUNT - BREAK_ACTIONS_COUNT; i++) {
+            exhibitActions.add(new Action(i, "Akcja " + i));
+        }
+        List<Action> breakActions = new ArrayList<>();
+        for (int i = ACTIONS_COUNT - BREAK_ACTIONS_COUNT; i < ACTIONS_COUNT; i++) {
+            breakActions.add(new Action(i, "Przerwa " + i));
+        }
+        return new Experiment(experimentId,
+                              "Badanie " + experimentId,
+                              questionsList(0),
+                              exhibitActions,
+                              breakActions,
+                              questionsList(100));
+    }
+
+    // question ids start at firstId, questions match answers of generated reports
+    private static QuestionsList questionsList(int firstId) {
+        int id = firstId;
+        List<QuestionType> order = new ArrayList<>();
+        List<SimpleQuestion> simple = new ArrayList<>();
+        for (int i = 0; i < SIMPLE_ANSWERS.length; i++) {
+            simple.add(new SimpleQuestion(id, "Pytanie " + id, "Pytanie " + id + "?",
+                                          SimpleQuestionAnswerType.TEXT));
+            order.add(QuestionType.SIMPLE);
+            id++;
+        }
+        List<MultipleChoiceQuestion> multipleChoice = new ArrayList<>();
+        for (int i = 0; i < MULTIPLE_CHOICE_QUESTIONS; i++) {
+            List<MultipleChoiceQuestionOption> options = new ArrayList<>();
+            for (int option = 0; option < MULTIPLE_CHOICE_OPTIONS; option++) {
+                options.add(new MultipleChoiceQuestionOption(option, "Opcja " + option));
+            }
+            multipleChoice.add(new MultipleChoiceQuestion(id, "Pytanie " + id,
+                                                          "Pytanie " + id + "?", false, options));
+            order.add(QuestionType.MULTIPLE_CHOICE);
+            id++;
+        }
+        List<SortQuestion> sort = new ArrayList<>();
+        for (int i = 0; i < SORT_QUESTIONS; i++) {
+            List<SortQuestionOption> options = new ArrayList<>();
+            for (int option = 0; option < SORT_OPTIONS; option++) {
+                options.add(new SortQuestionOption(option, "Element " + option));
+            }
+            sort.add(new SortQuestion(id, "Pytanie " + id, "Pytanie " + id + "?", options));
+            order.add(QuestionType.SORT);
+            id++;
+        }
+        return new QuestionsList(order, simple, multipleChoice, sort);
+    }
+
+    public static RawReport rawReport(int reportId, int experimentId, int events, Random random) {
+        RawReport report = new RawReport();
+        report.setReportId(reportId);
+        report.setExperimentId(experimentId);
+        report.setAnswersBefore(surveyAnswers(random));
+        report.setAnswersAfter(surveyAnswers(random));
+
+        int secondOfDay = 9 * 3600 + random.nextInt(8 * 3600);
+        report.setBeginTime(time(secondOfDay));
+        List<RawReportEvent> history = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            RawReportEvent event = new RawReportEvent();
+            // every fifth event is a break
+            if (i % 5 != 4) {
+                event.setExhibitId(random.nextInt(EXHIBITS_COUNT));
+            }
+            int duration = 10 + random.nextInt(290);
+            event.setBeginTime(time(secondOfDay));
+            event.setDurationInSecs(duration);
+            event.setActions(randomIds(random.nextInt(4), ACTIONS_COUNT, random));
+            history.add(event);
+            secondOfDay = Math.min(secondOfDay + duration, 24 * 3600 - 1);
+        }
+        report.setHistory(history);
+        report.setFinishTime(time(secondOfDay));
+        return report;
+    }
+
+    private static SurveyAnswers surveyAnswers(Random random) {
+        List<SimpleQuestionAnswer> simple = new ArrayList<>();
+        for (String answer : SIMPLE_ANSWERS) {
+            simple.add(new SimpleQuestionAnswer(answer));
+        }
+        List<MultipleChoiceQuestionAnswer> multipleChoice = new ArrayList<>();
+        for (int i = 0; i < MULTIPLE_CHOICE_QUESTIONS; i++) {
+            multipleChoice.add(new MultipleChoiceQuestionAnswer(randomIds(1 + random.nextInt(3),
+                                                                          MULTIPLE_CHOICE_OPTIONS,
+                                                                          random)));
+        }
+        List<SortQuestionAnswer> sort = new ArrayList<>();
+        for (int i = 0; i < SORT_QUESTIONS; i++) {
+            sort.add(new SortQuestionAnswer(Arrays.asList(3, 0, 4, 1, 2)));
+        }
+        return new SurveyAnswers(simple, multipleChoice, sort);
+    }
+
+    private static List<Integer> randomIds(int count, int bound, Random random) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(random.nextInt(bound));
+        }
+        return ids;
+    }
+
+    private static Time time(int secondOfDay) {
+        return new Time(secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+}
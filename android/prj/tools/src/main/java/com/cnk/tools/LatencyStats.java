@@ -0,0 +1,78 @@
+package com.cnk.tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+    Latencies of calls of many threads grouped by call name, printed as
+    throughput and percentiles.
+ */
+public class LatencyStats {
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private static class Samples {
+        private final List<Long> nanos = new ArrayList<>();
+        private long errors;
+    }
+
+    private final Map<String, Samples> samples = new TreeMap<>();
+
+    public synchronized void record(String call, long nanos) {
+        get(call).nanos.add(nanos);
+    }
+
+    public synchronized void recordError(String call) {
+        get(call).errors++;
+    }
+
+    private Samples get(String call) {
+        Samples forCall = samples.get(call);
+        if (forCall == null) {
+            forCall = new Samples();
+            samples.put(call, forCall);
+        }
+        return forCall;
+    }
+
+    public synchronized void print(long elapsedNanos) {
+        StringBuilder header = new StringBuilder(String.format("%-28s %8s %7s %9s", "call", "count", "errors", "calls/s"));
+        for (double percentile : PERCENTILES) {
+            header.append(String.format(" %9s", "p" + (int) percentile + " [ms]"));
+        }
+        header.append(String.format(" %9s", "max [ms]"));
+        System.out.println(header);
+
+        double elapsedSeconds = elapsedNanos / 1e9;
+        for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+            List<Long> sorted = new ArrayList<>(entry.getValue().nanos);
+            Collections.sort(sorted);
+            StringBuilder line = new StringBuilder(String.format("%-28s %8d %7d %9.1f",
+                                                                 entry.getKey(),
+                                                                 sorted.size(),
+                                                                 entry.getValue().errors,
+                                                                 sorted.size() / elapsedSeconds));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %9.1f", millis(percentile(sorted, percentile))));
+            }
+            line.append(String.format(" %9.1f", millis(sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1))));
+            System.out.println(line);
+        }
+    }
+
+    // nearest rank
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
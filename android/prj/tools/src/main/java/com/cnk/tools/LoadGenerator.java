@@ -0,0 +1,347 @@
+package com.cnk.tools;
+
+import com.cnk.communication.Endpoint;
+import com.cnk.communication.WireFormat;
+import com.cnk.communication.thrift.CurrentExperimentRequest;
+import com.cnk.communication.thrift.CurrentExperimentResponse;
+import com.cnk.communication.thrift.ExhibitChangesRequest;
+import com.cnk.communication.thrift.ExhibitChangesResponse;
+import com.cnk.communication.thrift.RawReport;
+import com.cnk.communication.thrift.Server;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+    Simulates a fleet of tablets working against one server. Every tablet has its own
+    connection, uploads its backlog of reports at start (end of the day, when all tablets
+    get back to wifi at once) and then polls exhibits and experiment and uploads new reports
+    at random intervals around the configured ones. Prints throughput and latency
+    percentiles of every call at the end.
+
+    Options (all optional):
+        --host NAME                 localhost
+        --port N                    9090
+        --protocol BINARY|COMPACT
+        --compression NONE|ZLIB
+        --tablets N                 simulated tablets, 20
+        --duration-sec N            length of the whole run, backlog upload included, 60
+        --backlog N                 reports of every tablet uploaded at start, 30
+        --batch true|false          backlog is uploaded with saveReports like the app does, false
+        --events N                  average events in a report, 60
+        --exhibit-poll-ms N         average period of exhibits sync, 10000
+        --experiment-poll-ms N      average period of experiment revalidation, 30000
+        --report-ms N               average period of finishing a new report, 60000
+        --page-size N               page of exhibit changes, 100
+        --timeout-ms N              socket timeout, 30000
+        --seed N
+ */
+public class LoadGenerator {
+
+    // same limits as in RaportUploadTask
+    private static final int MAX_REPORTS_IN_BATCH = 20;
+    private static final int MAX_EVENTS_IN_BATCH = 1000;
+
+    private interface Call<T> {
+        T perform(Server.Client client) throws TException;
+    }
+
+    private String host = "localhost";
+    private int port = 9090;
+    private WireFormat.Protocol protocol = WireFormat.DEFAULT.getProtocol();
+    private WireFormat.Compression compression = WireFormat.DEFAULT.getCompression();
+    private int tablets = 20;
+    private long durationSeconds = 60;
+    private int backlog = 30;
+    private boolean batch = false;
+    private int events = 60;
+    private long exhibitPollMillis = 10000;
+    private long experimentPollMillis = 30000;
+    private long reportMillis = 60000;
+    private int pageSize = 100;
+    private int timeoutMillis = 30000;
+    private long seed = 2016;
+
+    private Endpoint endpoint;
+    private final LatencyStats stats = new LatencyStats();
+    private CyclicBarrier start;
+    private volatile long finishMillis;
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator();
+        generator.parse(args);
+        generator.run();
+    }
+
+    private void parse(String[] args) {
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value of " + args[args.length - 1]);
+        }
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--host":
+                    host = value;
+                    break;
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--protocol":
+                    protocol = WireFormat.Protocol.valueOf(value);
+                    break;
+                case "--compression":
+                    compression = WireFormat.Compression.valueOf(value);
+                    break;
+                case "--tablets":
+                    tablets = Integer.parseInt(value);
+                    break;
+                case "--duration-sec":
+                    durationSeconds = Long.parseLong(value);
+                    break;
+                case "--backlog":
+                    backlog = Integer.parseInt(value);
+                    break;
+                case "--batch":
+                    batch = Boolean.parseBoolean(value);
+                    break;
+                case "--events":
+                    events = Integer.parseInt(value);
+                    break;
+                case "--exhibit-poll-ms":
+                    exhibitPollMillis = Long.parseLong(value);
+                    break;
+                case "--experiment-poll-ms":
+                    experimentPollMillis = Long.parseLong(value);
+                    break;
+                case "--report-ms":
+                    reportMillis = Long.parseLong(value);
+                    break;
+                case "--page-size":
+                    pageSize = Integer.parseInt(value);
+                    break;
+                case "--timeout-ms":
+                    timeoutMillis = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        endpoint = new Endpoint(host, port, new WireFormat(protocol, compression));
+        start = new CyclicBarrier(tablets);
+        System.out.println("Simulating " + tablets + " tablets against " + endpoint);
+
+        long startNanos = System.nanoTime();
+        finishMillis = System.currentTimeMillis() + durationSeconds * 1000;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < tablets; i++) {
+            Thread thread = new Thread(new Tablet(new Random(seed + i)), "tablet-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        stats.print(System.nanoTime() - startNanos);
+    }
+
+    private class Tablet implements Runnable {
+        private final Random random;
+        private TTransport transport;
+        private Server.Client client;
+
+        private Integer exhibitsCursor;
+        private boolean exhibitsResync;
+        private Integer experimentId;
+        private Long experimentVersion;
+
+        private Tablet(Random random) {
+            this.random = random;
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (Exception e) {
+                return;
+            }
+            uploadBacklog();
+
+            long now = System.currentTimeMillis();
+            long nextExhibitPoll = now + (long) (random.nextDouble() * exhibitPollMillis);
+            long nextExperimentPoll = now + (long) (random.nextDouble() * experimentPollMillis);
+            long nextReport = now + (long) (random.nextDouble() * reportMillis);
+            try {
+                while (true) {
+                    long next = Math.min(nextExhibitPoll, Math.min(nextExperimentPoll, nextReport));
+                    if (next >= finishMillis) {
+                        break;
+                    }
+                    Thread.sleep(Math.max(next - System.currentTimeMillis(), 0));
+                    if (next == nextExhibitPoll) {
+                        pollExhibits();
+                        nextExhibitPoll += randomPeriod(exhibitPollMillis);
+                    } else if (next == nextExperimentPoll) {
+                        pollExperiment();
+                        nextExperimentPoll += randomPeriod(experimentPollMillis);
+                    } else {
+                        uploadOneByOne("saveReport", newReports(1));
+                        nextReport += randomPeriod(reportMillis);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+            }
+        }
+
+        private long randomPeriod(long average) {
+            return (long) (average * (0.5 + random.nextDouble()));
+        }
+
+        private void uploadBacklog() {
+            List<RawReport> reports = newReports(backlog);
+            if (!batch) {
+                uploadOneByOne("saveReport (backlog)", reports);
+                return;
+            }
+            List<RawReport> toSend = new ArrayList<>();
+            int eventsInBatch = 0;
+            for (RawReport report : reports) {
+                if (!toSend.isEmpty() && (toSend.size() == MAX_REPORTS_IN_BATCH ||
+                                          eventsInBatch + report.getHistorySize() > MAX_EVENTS_IN_BATCH)) {
+                    saveReports(toSend);
+                    toSend = new ArrayList<>();
+                    eventsInBatch = 0;
+                }
+                toSend.add(report);
+                eventsInBatch += report.getHistorySize();
+            }
+            if (!toSend.isEmpty()) {
+                saveReports(toSend);
+            }
+        }
+
+        private void saveReports(final List<RawReport> reports) {
+            call("saveReports (backlog)", (server) -> {
+                server.saveReports(reports);
+                return null;
+            });
+        }
+
+        private void uploadOneByOne(String name, List<RawReport> reports) {
+            for (final RawReport report : reports) {
+                call(name, (server) -> {
+                    server.saveReport(report);
+                    return null;
+                });
+            }
+        }
+
+        // reports identified by client id, like the ones saved by the app
+        private List<RawReport> newReports(int count) {
+            List<RawReport> reports = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int reportEvents = events / 2 + random.nextInt(events + 1);
+                RawReport report = Fixtures.rawReport(0,
+                                                      experimentId != null ? experimentId : 1,
+                                                      reportEvents,
+                                                      random);
+                report.unsetReportId();
+                report.setClientId(UUID.randomUUID().toString());
+                reports.add(report);
+            }
+            return reports;
+        }
+
+        private void pollExhibits() {
+            boolean hasMore = true;
+            while (hasMore) {
+                final ExhibitChangesRequest request = new ExhibitChangesRequest(pageSize);
+                if (exhibitsCursor != null) {
+                    request.setAfterVersion(exhibitsCursor);
+                }
+                if (exhibitsResync) {
+                    request.setResync(true);
+                }
+                ExhibitChangesResponse response =
+                        call("getExhibitChanges", (server) -> server.getExhibitChanges(request));
+                if (response == null) {
+                    return;
+                }
+                exhibitsCursor = response.getCursor();
+                exhibitsResync = response.isResync() && response.isHasMore();
+                hasMore = response.isHasMore();
+            }
+        }
+
+        private void pollExperiment() {
+            final CurrentExperimentRequest request = new CurrentExperimentRequest();
+            if (experimentId != null && experimentVersion != null) {
+                request.setExperimentId(experimentId);
+                request.setContentVersion(experimentVersion);
+            }
+            CurrentExperimentResponse response =
+                    call("getCurrentExperimentIfChanged",
+                         (server) -> server.getCurrentExperimentIfChanged(request));
+            if (response == null || response.isUnchanged()) {
+                return;
+            }
+            if (response.getExperiment() != null) {
+                experimentId = response.getExperiment().getExperimentId();
+                experimentVersion = response.isSetContentVersion() ? response.getContentVersion() : null;
+            }
+        }
+
+        // failed call is recorded as an error, broken connection is opened again by the next one
+        private <T> T call(String name, Call<T> call) {
+            try {
+                if (client == null) {
+                    long connectStart = System.nanoTime();
+                    transport = endpoint.open(timeoutMillis);
+                    client = new Server.Client(endpoint.getWireFormat().createProtocol(transport));
+                    stats.record("connect", System.nanoTime() - connectStart);
+                }
+            } catch (TException e) {
+                stats.recordError("connect");
+                return null;
+            }
+
+            long callStart = System.nanoTime();
+            try {
+                T result = call.perform(client);
+                stats.record(name, System.nanoTime() - callStart);
+                return result;
+            } catch (TTransportException e) {
+                stats.recordError(name);
+                disconnect();
+                return null;
+            } catch (TException e) {
+                stats.recordError(name);
+                return null;
+            }
+        }
+
+        private void disconnect() {
+            if (transport != null) {
+                transport.close();
+            }
+            transport = null;
+            client = null;
+        }
+    }
+}
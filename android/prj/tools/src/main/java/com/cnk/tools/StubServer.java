@@ -0,0 +1,234 @@
+package com.cnk.tools;
+
+import com.cnk.communication.WireFormat;
+import com.cnk.communication.thrift.Server;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TServerSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.apache.thrift.transport.TTransportFactory;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Stand-in for the C++ server and nginx serving map tiles, keeps everything in memory.
+    Lets sync of the app be measured and stressed on a plain machine, with latency
+    and throughput of the museum wifi simulated on both ports.
+
+    Options (all optional):
+        --port N                thrift port, 9090
+        --http-port N           map tiles port, 8000
+        --host NAME             host put into tile urls, has to be reachable from the tablet, localhost
+        --latency-ms N          added to every call and tile request, 0
+        --jitter-ms N           random latency added on top of it, 0
+        --bytes-per-sec N       throughput of each connection, 0 means unlimited
+        --exhibits N            initial number of exhibits, 200
+        --floors N              floors of the map, 2
+        --exhibit-churn-ms N    period of random exhibit changes, 0 means none
+        --protocol BINARY|COMPACT
+        --compression NONE|ZLIB
+        --seed N
+ */
+public class StubServer {
+
+    // latency of a call or tile request
+    public static class Delay {
+        private final long latencyMillis;
+        private final long jitterMillis;
+        private final Random random = new Random();
+
+        public Delay(long latencyMillis, long jitterMillis) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+        }
+
+        public void sleep() throws InterruptedException {
+            long millis = latencyMillis;
+            if (jitterMillis > 0) {
+                synchronized (random) {
+                    millis += (long) (random.nextDouble() * jitterMillis);
+                }
+            }
+            if (millis > 0) {
+                Thread.sleep(millis);
+            }
+        }
+    }
+
+    // response is delayed instead of reading of the request, so idle pooled connections don't eat latency
+    private static class DelayingProcessor implements TProcessor {
+        private final TProcessor processor;
+        private final Delay delay;
+
+        private DelayingProcessor(TProcessor processor, Delay delay) {
+            this.processor = processor;
+            this.delay = delay;
+        }
+
+        @Override
+        public boolean process(TProtocol in, TProtocol out) throws TException {
+            return processor.process(in, new TProtocolDecorator(out) {
+                @Override
+                public void writeMessageBegin(TMessage message) throws TException {
+                    try {
+                        delay.sleep();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new TTransportException(TTransportException.UNKNOWN, e);
+                    }
+                    super.writeMessageBegin(message);
+                }
+            });
+        }
+    }
+
+    private static class StubTransportFactory extends TTransportFactory {
+        private final WireFormat wireFormat;
+        private final long bytesPerSecond;
+
+        private StubTransportFactory(WireFormat wireFormat, long bytesPerSecond) {
+            this.wireFormat = wireFormat;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        @Override
+        public TTransport getTransport(TTransport transport) {
+            TTransport throttled = new ThrottledTransport(transport, new Throttle(bytesPerSecond));
+            return wireFormat.wrap(new TFramedTransport(throttled));
+        }
+    }
+
+    private int port = 9090;
+    private int httpPort = 8000;
+    private String host = "localhost";
+    private long latencyMillis = 0;
+    private long jitterMillis = 0;
+    private long bytesPerSecond = 0;
+    private int exhibits = Fixtures.EXHIBITS_COUNT;
+    private int floors = 2;
+    private long exhibitChurnMillis = 0;
+    private WireFormat.Protocol protocol = WireFormat.DEFAULT.getProtocol();
+    private WireFormat.Compression compression = WireFormat.DEFAULT.getCompression();
+    private long seed = 2016;
+
+    private TServer server;
+    private StubTileServer tileServer;
+    private ScheduledExecutorService churn;
+    private StubService service;
+
+    public static void main(String[] args) throws TException, IOException {
+        StubServer stub = new StubServer();
+        stub.parse(args);
+        stub.start();
+        stub.serve();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--http-port":
+                    httpPort = Integer.parseInt(value);
+                    break;
+                case "--host":
+                    host = value;
+                    break;
+                case "--latency-ms":
+                    latencyMillis = Long.parseLong(value);
+                    break;
+                case "--jitter-ms":
+                    jitterMillis = Long.parseLong(value);
+                    break;
+                case "--bytes-per-sec":
+                    bytesPerSecond = Long.parseLong(value);
+                    break;
+                case "--exhibits":
+                    exhibits = Integer.parseInt(value);
+                    break;
+                case "--floors":
+                    floors = Integer.parseInt(value);
+                    break;
+                case "--exhibit-churn-ms":
+                    exhibitChurnMillis = Long.parseLong(value);
+                    break;
+                case "--protocol":
+                    protocol = WireFormat.Protocol.valueOf(value);
+                    break;
+                case "--compression":
+                    compression = WireFormat.Compression.valueOf(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (args.length % 2 != 0) {
+            throw new IllegalArgumentException("Missing value of " + args[args.length - 1]);
+        }
+    }
+
+    private void start() throws TException, IOException {
+        Delay delay = new Delay(latencyMillis, jitterMillis);
+        String tilesUrlPrefix = host + ":" + httpPort + StubTileServer.TILES_PATH.substring(1);
+        service = new StubService(exhibits, floors, tilesUrlPrefix, new Random(seed), new Runnable() {
+            @Override
+            public void run() {
+                stop();
+            }
+        });
+
+        WireFormat wireFormat = new WireFormat(protocol, compression);
+        TThreadPoolServer.Args args = new TThreadPoolServer.Args(new TServerSocket(port));
+        args.processor(new DelayingProcessor(new Server.Processor<>(service), delay));
+        args.transportFactory(new StubTransportFactory(wireFormat, bytesPerSecond));
+        args.protocolFactory(wireFormat.createProtocolFactory());
+        server = new TThreadPoolServer(args);
+
+        tileServer = new StubTileServer(httpPort, delay, bytesPerSecond);
+        tileServer.start();
+
+        if (exhibitChurnMillis > 0) {
+            churn = Executors.newSingleThreadScheduledExecutor();
+            churn.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    service.churnExhibit();
+                }
+            }, exhibitChurnMillis, exhibitChurnMillis, TimeUnit.MILLISECONDS);
+        }
+
+        System.out.println("Stub server on port " + port + " (" + wireFormat + "), tiles on " +
+                           tilesUrlPrefix + ", latency " + latencyMillis + "+" + jitterMillis +
+                           " ms, " + (bytesPerSecond > 0 ? bytesPerSecond + " B/s" : "unlimited"));
+    }
+
+    private void serve() {
+        server.serve();
+        System.out.println("Stub server stopped, received reports: " + service.getReportsCount());
+    }
+
+    private void stop() {
+        if (churn != null) {
+            churn.shutdownNow();
+        }
+        tileServer.stop();
+        server.stop();
+    }
+}
@@ -0,0 +1,561 @@
+package com.cnk.tools;
+
+import com.cnk.communication.thrift.Action;
+import com.cnk.communication.thrift.CloneExperimentRequest;
+import com.cnk.communication.thrift.CreateActionRequest;
+import com.cnk.communication.thrift.CreateExhibitRequest;
+import com.cnk.communication.thrift.CreateExperimentRequest;
+import com.cnk.communication.thrift.CreateMultipleChoiceQuestionRequest;
+import com.cnk.communication.thrift.CreateSimpleQuestionRequest;
+import com.cnk.communication.thrift.CreateSortQuestionRequest;
+import com.cnk.communication.thrift.CurrentExperimentRequest;
+import com.cnk.communication.thrift.CurrentExperimentResponse;
+import com.cnk.communication.thrift.Date;
+import com.cnk.communication.thrift.DuplicateName;
+import com.cnk.communication.thrift.Exhibit;
+import com.cnk.communication.thrift.ExhibitChange;
+import com.cnk.communication.thrift.ExhibitChangesRequest;
+import com.cnk.communication.thrift.ExhibitChangesResponse;
+import com.cnk.communication.thrift.Experiment;
+import com.cnk.communication.thrift.ExperimentInfo;
+import com.cnk.communication.thrift.HelloMsg;
+import com.cnk.communication.thrift.InvalidData;
+import com.cnk.communication.thrift.MapFrame;
+import com.cnk.communication.thrift.MapImage;
+import com.cnk.communication.thrift.MultipleChoiceQuestion;
+import com.cnk.communication.thrift.NewExhibitsRequest;
+import com.cnk.communication.thrift.NewExhibitsResponse;
+import com.cnk.communication.thrift.QuestionsList;
+import com.cnk.communication.thrift.RawReport;
+import com.cnk.communication.thrift.ReportInfo;
+import com.cnk.communication.thrift.Server;
+import com.cnk.communication.thrift.SetExhibitFrameRequest;
+import com.cnk.communication.thrift.SetMapImageRequest;
+import com.cnk.communication.thrift.SimpleQuestion;
+import com.cnk.communication.thrift.SingleExperimentInfo;
+import com.cnk.communication.thrift.SortQuestion;
+import com.cnk.communication.thrift.UpdateExhibitRequest;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TBinaryProtocol;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/*
+    Server API kept in memory, behaves like the C++ server in calls made by tablets:
+    exhibit versions with tombstones, experiment revalidation, report ids and
+    idempotent saving. Calls of the administration panel aren't supported.
+ */
+public class StubService implements Server.Iface {
+
+    private static final int EXPERIMENT_ID = 1;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_RESERVED_IDS = 100;
+    private static final int MAX_CLIENT_ID_LENGTH = 64;
+    // older tombstones are purged, clients behind them have to resync
+    private static final int TOMBSTONES_KEPT = 100;
+
+    private static class StoredExhibit {
+        private final int exhibitId;
+        private final int version;
+        // null for tombstone
+        private final Exhibit exhibit;
+
+        private StoredExhibit(int exhibitId, int version, Exhibit exhibit) {
+            this.exhibitId = exhibitId;
+            this.version = version;
+            this.exhibit = exhibit;
+        }
+    }
+
+    private final int floors;
+    private final String tilesUrlPrefix;
+    private final Random random;
+    private final Runnable onShutdown;
+
+    private final Map<Integer, StoredExhibit> exhibits = new TreeMap<>();
+    private int exhibitsVersion;
+    private int lastDeletedVersion;
+    private int lastPurgedVersion;
+    private int lastExhibitId;
+
+    private final Experiment experiment;
+    private final long experimentVersion;
+
+    private final AtomicInteger lastReportId = new AtomicInteger();
+    private final Map<Integer, RawReport> reports = new TreeMap<>();
+    private final Set<String> reportClientIds = new HashSet<>();
+
+    public StubService(int exhibitsCount,
+                       int floors,
+                       String tilesUrlPrefix,
+                       Random random,
+                       Runnable onShutdown) throws TException {
+        this.floors = floors;
+        this.tilesUrlPrefix = tilesUrlPrefix;
+        this.random = random;
+        this.onShutdown = onShutdown;
+        for (int i = 0; i < exhibitsCount; i++) {
+            lastExhibitId++;
+            putExhibit(Fixtures.exhibit(lastExhibitId, floors, random));
+        }
+        experiment = Fixtures.experiment(EXPERIMENT_ID);
+        experimentVersion = contentVersion(experiment);
+    }
+
+    // same as contentVersion of the C++ server
+    private static long contentVersion(Experiment experiment) throws TException {
+        CRC32 crc = new CRC32();
+        crc.update(new TSerializer(new TBinaryProtocol.Factory()).serialize(experiment));
+        return crc.getValue();
+    }
+
+    // changes, adds or removes random exhibit like a curator in the administration panel
+    public synchronized void churnExhibit() {
+        int choice = random.nextInt(10);
+        List<Integer> existing = getExistingExhibitIds();
+        if (choice == 0 || existing.isEmpty()) {
+            lastExhibitId++;
+            putExhibit(Fixtures.exhibit(lastExhibitId, floors, random));
+        } else if (choice == 1) {
+            removeStoredExhibit(existing.get(random.nextInt(existing.size())));
+        } else {
+            int exhibitId = existing.get(random.nextInt(existing.size()));
+            Exhibit exhibit = exhibits.get(exhibitId).exhibit.deepCopy();
+            exhibit.setRgbHex(random.nextInt(0x1000000));
+            putExhibit(exhibit);
+        }
+    }
+
+    private void putExhibit(Exhibit exhibit) {
+        exhibitsVersion++;
+        exhibits.put(exhibit.getExhibitId(),
+                     new StoredExhibit(exhibit.getExhibitId(), exhibitsVersion, exhibit));
+    }
+
+    private void removeStoredExhibit(int exhibitId) {
+        exhibitsVersion++;
+        lastDeletedVersion = exhibitsVersion;
+        exhibits.put(exhibitId, new StoredExhibit(exhibitId, exhibitsVersion, null));
+        purgeTombstones();
+    }
+
+    private void purgeTombstones() {
+        List<StoredExhibit> tombstones = new ArrayList<>();
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.exhibit == null) {
+                tombstones.add(stored);
+            }
+        }
+        if (tombstones.size() <= TOMBSTONES_KEPT) {
+            return;
+        }
+        sortByVersion(tombstones);
+        for (StoredExhibit stored : tombstones.subList(0, tombstones.size() - TOMBSTONES_KEPT)) {
+            exhibits.remove(stored.exhibitId);
+            lastPurgedVersion = Math.max(lastPurgedVersion, stored.version);
+        }
+    }
+
+    private List<Integer> getExistingExhibitIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.exhibit != null) {
+                ids.add(stored.exhibitId);
+            }
+        }
+        return ids;
+    }
+
+    private StoredExhibit getExistingExhibit(int exhibitId) throws InvalidData {
+        StoredExhibit stored = exhibits.get(exhibitId);
+        if (stored == null || stored.exhibit == null) {
+            throw new InvalidData();
+        }
+        return stored;
+    }
+
+    private static void sortByVersion(List<StoredExhibit> list) {
+        Collections.sort(list, new Comparator<StoredExhibit>() {
+            @Override
+            public int compare(StoredExhibit lhs, StoredExhibit rhs) {
+                return Integer.compare(lhs.version, rhs.version);
+            }
+        });
+    }
+
+    private static TException unsupported(String method) {
+        return new TException(method + " is not supported by stub server");
+    }
+
+    @Override
+    public void shutdown() throws TException {
+        onShutdown.run();
+    }
+
+    @Override
+    public int ping(HelloMsg msg) throws TException {
+        return msg.getNum();
+    }
+
+    @Override
+    public Map<Integer, MapImage> getMapImages() throws TException {
+        return Fixtures.mapImages(floors, tilesUrlPrefix);
+    }
+
+    @Override
+    public MapImage setMapImage(SetMapImageRequest request) throws TException {
+        throw unsupported("setMapImage");
+    }
+
+    @Override
+    public void removeFloor(int floor) throws TException {
+        throw unsupported("removeFloor");
+    }
+
+    @Override
+    public synchronized NewExhibitsResponse getNewExhibits(NewExhibitsRequest request) throws TException {
+        boolean fullRefresh = !request.isSetAcquiredVersion() ||
+                              request.getAcquiredVersion() < lastDeletedVersion;
+        int acquiredVersion = fullRefresh ? 0 : request.getAcquiredVersion();
+        Map<Integer, Exhibit> changed = new TreeMap<>();
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.exhibit != null && stored.version > acquiredVersion) {
+                changed.put(stored.exhibitId, stored.exhibit.deepCopy());
+            }
+        }
+        return new NewExhibitsResponse(exhibitsVersion, changed, fullRefresh);
+    }
+
+    @Override
+    public synchronized ExhibitChangesResponse getExhibitChanges(ExhibitChangesRequest request) throws TException {
+        if (request.getPageSize() <= 0 || request.getPageSize() > MAX_PAGE_SIZE) {
+            throw new InvalidData();
+        }
+        boolean requestedResync = request.isSetResync() && request.isResync();
+        boolean resync = requestedResync || !request.isSetAfterVersion() ||
+                         request.getAfterVersion() < lastPurgedVersion;
+        int afterVersion = request.isSetAfterVersion() ? request.getAfterVersion() : 0;
+        if (resync && !requestedResync) {
+            afterVersion = 0;
+        }
+
+        List<StoredExhibit> newer = new ArrayList<>();
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.version > afterVersion) {
+                newer.add(stored);
+            }
+        }
+        sortByVersion(newer);
+
+        // many exhibits can share a version, page never ends in the middle of them
+        int end = 0;
+        while (end < newer.size() && (end < request.getPageSize() ||
+                                      newer.get(end).version == newer.get(end - 1).version)) {
+            end++;
+        }
+        List<ExhibitChange> changes = new ArrayList<>();
+        for (StoredExhibit stored : newer.subList(0, end)) {
+            ExhibitChange change = new ExhibitChange(stored.exhibitId, stored.version);
+            if (stored.exhibit != null) {
+                change.setExhibit(stored.exhibit.deepCopy());
+            }
+            changes.add(change);
+        }
+
+        boolean hasMore = end < newer.size();
+        int cursor = hasMore ? newer.get(end - 1).version : exhibitsVersion;
+        ExhibitChangesResponse response = new ExhibitChangesResponse(changes, cursor, hasMore, resync);
+        if (resync && !hasMore) {
+            response.setExistingExhibitIds(getExistingExhibitIds());
+        }
+        return response;
+    }
+
+    @Override
+    public synchronized Exhibit createExhibit(CreateExhibitRequest request) throws TException {
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.exhibit != null && stored.exhibit.getName().equals(request.getName())) {
+                throw new DuplicateName();
+            }
+        }
+        lastExhibitId++;
+        Exhibit exhibit = new Exhibit(lastExhibitId, request.getName(), request.getRgbHex());
+        if (request.isSetVisibleFrame()) {
+            exhibit.setMapFrame(request.getVisibleFrame());
+        }
+        putExhibit(exhibit);
+        return exhibit.deepCopy();
+    }
+
+    @Override
+    public synchronized List<Exhibit> getAllExhibits() throws TException {
+        List<Exhibit> result = new ArrayList<>();
+        for (StoredExhibit stored : exhibits.values()) {
+            if (stored.exhibit != null) {
+                result.add(stored.exhibit.deepCopy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void setExhibitFrame(SetExhibitFrameRequest request) throws TException {
+        Exhibit exhibit = getExistingExhibit(request.getExhibitId()).exhibit.deepCopy();
+        if (!exhibit.isSetMapFrame()) {
+            throw new InvalidData();
+        }
+        exhibit.setMapFrame(new MapFrame(request.getFrame(), exhibit.getMapFrame().getFloor()));
+        putExhibit(exhibit);
+    }
+
+    @Override
+    public synchronized Exhibit updateExhibit(UpdateExhibitRequest request) throws TException {
+        Exhibit exhibit = getExistingExhibit(request.getExhibitId()).exhibit.deepCopy();
+        exhibit.setRgbHex(request.getRgbHex());
+        if (request.isSetVisibleFrame()) {
+            exhibit.setMapFrame(request.getVisibleFrame());
+        } else {
+            exhibit.unsetMapFrame();
+        }
+        putExhibit(exhibit);
+        return exhibit.deepCopy();
+    }
+
+    @Override
+    public synchronized void removeExhibit(int exhibitId) throws TException {
+        getExistingExhibit(exhibitId);
+        removeStoredExhibit(exhibitId);
+    }
+
+    @Override
+    public CurrentExperimentResponse getCurrentExperiment() throws TException {
+        CurrentExperimentResponse response = new CurrentExperimentResponse();
+        response.setExperiment(experiment.deepCopy());
+        return response;
+    }
+
+    @Override
+    public CurrentExperimentResponse getCurrentExperimentIfChanged(CurrentExperimentRequest request) throws TException {
+        CurrentExperimentResponse response = new CurrentExperimentResponse();
+        response.setContentVersion(experimentVersion);
+        if (request.isSetExperimentId() && request.getExperimentId() == EXPERIMENT_ID &&
+            request.isSetContentVersion() && request.getContentVersion() == experimentVersion) {
+            response.setUnchanged(true);
+        } else {
+            response.setExperiment(experiment.deepCopy());
+        }
+        return response;
+    }
+
+    @Override
+    public void createExperiment(CreateExperimentRequest request) throws TException {
+        throw unsupported("createExperiment");
+    }
+
+    @Override
+    public void updateExperiment(int experimentId, CreateExperimentRequest request) throws TException {
+        throw unsupported("updateExperiment");
+    }
+
+    @Override
+    public void cloneExperiment(CloneExperimentRequest request) throws TException {
+        throw unsupported("cloneExperiment");
+    }
+
+    @Override
+    public List<ExperimentInfo> getReadyExperiments() throws TException {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<ExperimentInfo> getFinishedExperiments() throws TException {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public SingleExperimentInfo getActiveExperiment() throws TException {
+        SingleExperimentInfo info = new SingleExperimentInfo();
+        info.setInfo(new ExperimentInfo(EXPERIMENT_ID, experiment.getName()));
+        return info;
+    }
+
+    @Override
+    public Experiment getExperiment(int experimentId) throws TException {
+        if (experimentId != EXPERIMENT_ID) {
+            throw new InvalidData();
+        }
+        return experiment.deepCopy();
+    }
+
+    @Override
+    public void startExperiment(int experimentId) throws TException {
+        throw unsupported("startExperiment");
+    }
+
+    @Override
+    public void finishExperiment() throws TException {
+        throw unsupported("finishExperiment");
+    }
+
+    @Override
+    public void removeExperiment(int experimentId) throws TException {
+        throw unsupported("removeExperiment");
+    }
+
+    @Override
+    public int getIdForNewReport() throws TException {
+        return lastReportId.incrementAndGet();
+    }
+
+    @Override
+    public void saveReport(RawReport report) throws TException {
+        saveReports(Collections.singletonList(report));
+    }
+
+    @Override
+    public List<Integer> getIdsForNewReports(int count) throws TException {
+        if (count <= 0 || count > MAX_RESERVED_IDS) {
+            throw new InvalidData();
+        }
+        int last = lastReportId.getAndAdd(count);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            ids.add(last + i);
+        }
+        return ids;
+    }
+
+    // whole batch is validated first, like in one transaction of the C++ server
+    @Override
+    public synchronized void saveReports(List<RawReport> reports) throws TException {
+        for (RawReport report : reports) {
+            if (report.isSetClientId()) {
+                String clientId = report.getClientId();
+                if (clientId.isEmpty() || clientId.length() > MAX_CLIENT_ID_LENGTH) {
+                    throw new InvalidData();
+                }
+            } else if (!report.isSetReportId()) {
+                throw new InvalidData();
+            }
+        }
+        for (RawReport report : reports) {
+            if (report.isSetClientId()) {
+                if (reportClientIds.add(report.getClientId())) {
+                    this.reports.put(lastReportId.incrementAndGet(), report);
+                }
+            } else if (!this.reports.containsKey(report.getReportId())) {
+                this.reports.put(report.getReportId(), report);
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<ReportInfo> getAllReportsForExperiment(int experimentId) throws TException {
+        Calendar now = Calendar.getInstance();
+        Date today = new Date(now.get(Calendar.DAY_OF_MONTH),
+                              now.get(Calendar.MONTH) + 1,
+                              now.get(Calendar.YEAR));
+        List<ReportInfo> result = new ArrayList<>();
+        for (Map.Entry<Integer, RawReport> entry : reports.entrySet()) {
+            if (entry.getValue().getExperimentId() == experimentId) {
+                result.add(new ReportInfo(entry.getKey(), today));
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public synchronized int getReportsCount() {
+        return reports.size();
+    }
+
+    @Override
+    public String getExcelReport(int reportId) throws TException {
+        throw unsupported("getExcelReport");
+    }
+
+    @Override
+    public String getCombinedExcelReport(int experimentId) throws TException {
+        throw unsupported("getCombinedExcelReport");
+    }
+
+    @Override
+    public Action createAction(CreateActionRequest request) throws TException {
+        throw unsupported("createAction");
+    }
+
+    @Override
+    public List<Action> getAllActions() throws TException {
+        List<Action> actions = new ArrayList<>(experiment.getExhibitActions());
+        actions.addAll(experiment.getBreakActions());
+        return actions;
+    }
+
+    @Override
+    public void removeAction(int actionId) throws TException {
+        throw unsupported("removeAction");
+    }
+
+    @Override
+    public QuestionsList getAllQuestions() throws TException {
+        throw unsupported("getAllQuestions");
+    }
+
+    @Override
+    public SimpleQuestion createSimpleQuestion(CreateSimpleQuestionRequest request) throws TException {
+        throw unsupported("createSimpleQuestion");
+    }
+
+    @Override
+    public List<SimpleQuestion> getAllSimpleQuestions() throws TException {
+        throw unsupported("getAllSimpleQuestions");
+    }
+
+    @Override
+    public void removeSimpleQuestion(int questionId) throws TException {
+        throw unsupported("removeSimpleQuestion");
+    }
+
+    @Override
+    public MultipleChoiceQuestion createMultipleChoiceQuestion(CreateMultipleChoiceQuestionRequest request) throws TException {
+        throw unsupported("createMultipleChoiceQuestion");
+    }
+
+    @Override
+    public List<MultipleChoiceQuestion> getAllMultipleChoiceQuestions() throws TException {
+        throw unsupported("getAllMultipleChoiceQuestions");
+    }
+
+    @Override
+    public void removeMultipleChoiceQuestion(int questionId) throws TException {
+        throw unsupported("removeMultipleChoiceQuestion");
+    }
+
+    @Override
+    public SortQuestion createSortQuestion(CreateSortQuestionRequest request) throws TException {
+        throw unsupported("createSortQuestion");
+    }
+
+    @Override
+    public List<SortQuestion> getAllSortQuestions() throws TException {
+        throw unsupported("getAllSortQuestions");
+    }
+
+    @Override
+    public void removeSortQuestion(int questionId) throws TException {
+        throw unsupported("removeSortQuestion");
+    }
+}
@@ -0,0 +1,176 @@
+package com.cnk.tools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+/*
+    Serves map tiles listed by the stub server, like static files of the server behind nginx.
+    Every tile of a zoom level is the same noisy JPEG, so its size is close to a photo of a map.
+    Packs of zoom levels are stored zips of all their tiles, like the ones made by the server.
+    Responses have ETag and Last-Modified like the ones of nginx, conditional requests get 304.
+ */
+public class StubTileServer {
+
+    public static final String TILES_PATH = "/static/map_tiles/";
+    private static final Pattern TILE_PATTERN =
+            Pattern.compile(TILES_PATH + "(\\d+)/(\\d+)/(\\d+)/(\\d+)\\.jpg");
+    private static final Pattern PACK_PATTERN =
+            Pattern.compile(TILES_PATH + "(\\d+)/(\\d+)/" + Pattern.quote(Fixtures.PACK_FILENAME));
+    private static final int THREADS = 8;
+    private static final int CHUNK_SIZE = 4096;
+
+    private final HttpServer server;
+    private final StubServer.Delay delay;
+    private final long bytesPerSecond;
+    private final Map<Integer, byte[]> tiles = new HashMap<>();
+    private final Map<Integer, byte[]> packs = new HashMap<>();
+    // tiles never change while the stub runs
+    private final String lastModified;
+
+    public StubTileServer(int port, StubServer.Delay delay, long bytesPerSecond) throws IOException {
+        this.delay = delay;
+        this.bytesPerSecond = bytesPerSecond;
+        SimpleDateFormat httpDate =
+                new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        this.lastModified = httpDate.format(new Date());
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(TILES_PATH, new TileHandler());
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private synchronized byte[] getTile(int level) throws IOException {
+        byte[] tile = tiles.get(level);
+        if (tile == null) {
+            tile = renderTile(Fixtures.tileSize(level), level);
+            tiles.put(level, tile);
+        }
+        return tile;
+    }
+
+    private synchronized byte[] getPack(int level) throws IOException {
+        byte[] pack = packs.get(level);
+        if (pack == null) {
+            pack = createPack(getTile(level), Fixtures.tilesInRow(level));
+            packs.put(level, pack);
+        }
+        return pack;
+    }
+
+    private static byte[] createPack(byte[] tile, int tilesInRow) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(tile);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        for (int x = 0; x < tilesInRow; x++) {
+            for (int y = 0; y < tilesInRow; y++) {
+                ZipEntry entry = new ZipEntry(x + "/" + y + ".jpg");
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(tile.length);
+                entry.setCrc(crc.getValue());
+                zip.putNextEntry(entry);
+                zip.write(tile);
+                zip.closeEntry();
+            }
+        }
+        zip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] renderTile(int size, long seed) throws IOException {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                int shade = 160 + random.nextInt(64);
+                image.setRGB(x, y, (shade << 16) | (shade << 8) | (shade - 32));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private class TileHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                Matcher tile = TILE_PATTERN.matcher(path);
+                Matcher pack = PACK_PATTERN.matcher(path);
+                byte[] body;
+                String contentType;
+                if (tile.matches() && Fixtures.tileSize(Integer.parseInt(tile.group(2))) != 0) {
+                    body = getTile(Integer.parseInt(tile.group(2)));
+                    contentType = "image/jpeg";
+                } else if (pack.matches() &&
+                           Fixtures.tileSize(Integer.parseInt(pack.group(2))) != 0) {
+                    body = getPack(Integer.parseInt(pack.group(2)));
+                    contentType = "application/zip";
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                delay.sleep();
+
+                CRC32 crc = new CRC32();
+                crc.update(body);
+                String etag = String.format("\"%x-%08x\"", body.length, crc.getValue());
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.getResponseHeaders().set("Last-Modified", lastModified);
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+                if (etag.equals(ifNoneMatch) ||
+                    (ifNoneMatch == null && lastModified.equals(ifModifiedSince))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", contentType);
+                exchange.sendResponseHeaders(200, body.length);
+                Throttle throttle = new Throttle(bytesPerSecond);
+                OutputStream out = exchange.getResponseBody();
+                for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+                    int length = Math.min(CHUNK_SIZE, body.length - offset);
+                    throttle.acquire(length);
+                    out.write(body, offset, length);
+                }
+                out.flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.cnk.tools;
+
+/*
+    Limits throughput of one connection with a token bucket: it refills at the rate
+    and holds at most one second of bytes, so an idle connection can't save up
+    for a long unthrottled burst. Transfer bigger than what is in the bucket is delayed
+    until the bucket refills enough to cover it.
+ */
+public class Throttle {
+
+    private static final long MILLIS_IN_SEC = 1000;
+
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastMillis;
+
+    // 0 means unlimited
+    public Throttle(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastMillis = System.currentTimeMillis();
+    }
+
+    public synchronized void acquire(int count) throws InterruptedException {
+        if (bytesPerSecond <= 0 || count <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        tokens = Math.min(bytesPerSecond,
+                          tokens + (double) (now - lastMillis) * bytesPerSecond / MILLIS_IN_SEC);
+        lastMillis = now;
+        // bucket goes into debt, which the next acquire sees as already refilled by the sleep
+        tokens -= count;
+        if (tokens < 0) {
+            Thread.sleep((long) Math.ceil(-tokens * MILLIS_IN_SEC / bytesPerSecond));
+        }
+    }
+}
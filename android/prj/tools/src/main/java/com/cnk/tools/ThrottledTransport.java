@@ -0,0 +1,61 @@
+package com.cnk.tools;
+
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/*
+    Raw socket transport of the stub server with limited throughput,
+    framing and compression are put on top of it.
+ */
+public class ThrottledTransport extends TTransport {
+
+    private final TTransport transport;
+    private final Throttle throttle;
+
+    public ThrottledTransport(TTransport transport, Throttle throttle) {
+        this.transport = transport;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    @Override
+    public void open() throws TTransportException {
+        transport.open();
+    }
+
+    @Override
+    public void close() {
+        transport.close();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+        int read = transport.read(buf, off, len);
+        acquire(read);
+        return read;
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) throws TTransportException {
+        acquire(len);
+        transport.write(buf, off, len);
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+        transport.flush();
+    }
+
+    private void acquire(int count) throws TTransportException {
+        try {
+            throttle.acquire(count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TTransportException(TTransportException.UNKNOWN, e);
+        }
+    }
+}
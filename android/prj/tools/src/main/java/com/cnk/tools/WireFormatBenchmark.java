@@ -0,0 +1,128 @@
+package com.cnk.tools;
+
+import com.cnk.communication.WireFormat;
+import com.cnk.communication.thrift.RawReport;
+
+import org.apache.thrift.TBase;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/*
+    Encodes server API payloads with every supported wire format and prints
+    size on the wire (frame headers included) and average encode/decode time.
+ */
+public class WireFormatBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int ITERATIONS = 100;
+    private static final long SEED = 2016;
+
+    public static void main(String[] args) throws TException {
+        Map<String, List<TBase<?, ?>>> fixtures = new LinkedHashMap<>();
+        fixtures.put("report, 20 events", reports(1, 20));
+        fixtures.put("report, 300 events", reports(1, 300));
+        fixtures.put("20 reports, 60 events", reports(20, 60));
+        fixtures.put("map images, 3 floors", new ArrayList<>(Fixtures.mapImages(3).values()));
+
+        List<WireFormat> formats = new ArrayList<>();
+        for (WireFormat.Protocol protocol : WireFormat.Protocol.values()) {
+            for (WireFormat.Compression compression : WireFormat.Compression.values()) {
+                formats.add(new WireFormat(protocol, compression));
+            }
+        }
+
+        System.out.println(String.format("%-24s %-14s %10s %7s %12s %12s",
+                                         "payload",
+                                         "format",
+                                         "bytes",
+                                         "ratio",
+                                         "encode [us]",
+                                         "decode [us]"));
+        for (Map.Entry<String, List<TBase<?, ?>>> fixture : fixtures.entrySet()) {
+            int baseSize = 0;
+            for (WireFormat format : formats) {
+                byte[] encoded = encode(format, fixture.getValue());
+                if (baseSize == 0) {
+                    baseSize = encoded.length;
+                }
+                verify(fixture.getValue(), decode(format, encoded, fixture.getValue()));
+
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    decode(format, encode(format, fixture.getValue()), fixture.getValue());
+                }
+                long encodeNanos = 0;
+                long decodeNanos = 0;
+                for (int i = 0; i < ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    byte[] bytes = encode(format, fixture.getValue());
+                    long encodedNanos = System.nanoTime();
+                    decode(format, bytes, fixture.getValue());
+                    decodeNanos += System.nanoTime() - encodedNanos;
+                    encodeNanos += encodedNanos - start;
+                }
+
+                System.out.println(String.format("%-24s %-14s %10d %7.2f %12.1f %12.1f",
+                                                 fixture.getKey(),
+                                                 format,
+                                                 encoded.length,
+                                                 (double) encoded.length / baseSize,
+                                                 encodeNanos / 1000.0 / ITERATIONS,
+                                                 decodeNanos / 1000.0 / ITERATIONS));
+            }
+        }
+    }
+
+    private static List<TBase<?, ?>> reports(int count, int events) {
+        Random random = new Random(SEED);
+        List<TBase<?, ?>> reports = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RawReport report = Fixtures.rawReport(i, 1, events, random);
+            reports.add(report);
+        }
+        return reports;
+    }
+
+    static byte[] encode(WireFormat format, List<TBase<?, ?>> messages) throws TException {
+        TMemoryBuffer buffer = new TMemoryBuffer(4096);
+        TTransport transport = format.wrap(new TFramedTransport(buffer));
+        TProtocol protocol = format.createProtocol(transport);
+        for (TBase<?, ?> message : messages) {
+            message.write(protocol);
+        }
+        transport.flush();
+        return Arrays.copyOf(buffer.getArray(), buffer.length());
+    }
+
+    static List<TBase<?, ?>> decode(WireFormat format,
+                              byte[] bytes,
+                              List<TBase<?, ?>> prototypes) throws TException {
+        TTransport transport =
+                format.wrap(new TFramedTransport(new TMemoryInputTransport(bytes)));
+        TProtocol protocol = format.createProtocol(transport);
+        List<TBase<?, ?>> messages = new ArrayList<>();
+        for (TBase<?, ?> prototype : prototypes) {
+            TBase<?, ?> message = prototype.deepCopy();
+            message.clear();
+            message.read(protocol);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static void verify(List<TBase<?, ?>> expected, List<TBase<?, ?>> actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("decoded payload differs from encoded one");
+        }
+    }
+}
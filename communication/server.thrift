@@ -35,6 +35,9 @@ service Server {
     structs.NewExhibitsResponse getNewExhibits(1: structs.NewExhibitsRequest request)
         throws (1: structs.InternalError err),
 
+    structs.ExhibitChangesResponse getExhibitChanges(1: structs.ExhibitChangesRequest request)
+        throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr),
+
     structs.Exhibit createExhibit(1: structs.CreateExhibitRequest request)
         throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr, 3: structs.DuplicateName nameErr),
 
@@ -58,6 +61,9 @@ service Server {
     structs.CurrentExperimentResponse getCurrentExperiment()
         throws (1: structs.InternalError err),
 
+    structs.CurrentExperimentResponse getCurrentExperimentIfChanged(1: structs.CurrentExperimentRequest request)
+        throws (1: structs.InternalError err),
+
     void createExperiment(1: structs.CreateExperimentRequest request)
         throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr, 3: structs.DuplicateName nameErr),
 
@@ -99,6 +105,12 @@ service Server {
     void saveReport(1: structs.RawReport report)
         throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr),
 
+    list<i32> getIdsForNewReports(1: i32 count)
+        throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr),
+
+    void saveReports(1: list<structs.RawReport> reports)
+        throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr),
+
     list<structs.ReportInfo> getAllReportsForExperiment(1: i32 experimentId)
         throws (1: structs.InternalError intErr, 2: structs.InvalidData dataErr),
 
@@ -56,6 +56,12 @@ struct ZoomLevel {
     1: required Size scaledSize,
     2: required Size tileSize,
     3: required list<list<string>> tilesUrls,
+    // same layout as tilesUrls, changes only when content of the tile changes,
+    // not set for maps uploaded before hashes were introduced
+    4: optional list<list<string>> tilesHashes,
+    // all tiles in one uncompressed zip, entries named {x}/{y}.jpg where x, y are
+    // indices in tilesUrls, tilesUrls are a fallback when it can't be downloaded
+    5: optional string packUrl,
 }
 
 struct MapImage {
@@ -91,6 +97,33 @@ struct NewExhibitsResponse {
     3: required bool fullRefresh,
 }
 
+struct ExhibitChange {
+    1: required i32 exhibitId,
+    2: required i32 version,
+    // not set when exhibit was removed
+    3: optional Exhibit exhibit,
+}
+
+struct ExhibitChangesRequest {
+    // version of the last applied change, not set when there are no exhibits yet
+    1: optional i32 afterVersion,
+    2: required i32 pageSize,
+    // set when resync started earlier hasn't reached the last page
+    3: optional bool resync,
+}
+
+struct ExhibitChangesResponse {
+    // ordered by version
+    1: required list<ExhibitChange> changes,
+    // afterVersion of the next page
+    2: required i32 cursor,
+    3: required bool hasMore,
+    // some removals can't be sent as changes anymore, exhibits not listed
+    // in existingExhibitIds of the last page have to be removed by the client
+    4: required bool resync,
+    5: optional list<i32> existingExhibitIds,
+}
+
 struct SetExhibitFrameRequest {
     1: required i32 exhibitId,
     2: required Frame frame,
@@ -255,8 +288,18 @@ struct Experiment {
     6: required QuestionsList surveyAfter,
 }
 
+// identifies experiment already stored on the device
+struct CurrentExperimentRequest {
+    1: optional i32 experimentId,
+    2: optional i64 contentVersion,
+}
+
 struct CurrentExperimentResponse {
     1: optional Experiment experiment,
+    // set only by getCurrentExperimentIfChanged, changes with any change of the experiment
+    2: optional i64 contentVersion,
+    // experiment is not sent when it's the same as the one from request
+    3: optional bool unchanged,
 }
 
 struct CreateExperimentRequest {
@@ -314,12 +357,15 @@ struct SurveyAnswers {
     3: required list<SortQuestionAnswer> sortQuestionsAnswers,
 }
 
+// reportId is reserved on the server, clientId is generated by the tablet
+// and saving report with the same clientId again doesn't change anything
 struct RawReport {
     1: required i32 experimentId,
-    2: required i32 reportId,
+    2: optional i32 reportId,
     3: required SurveyAnswers answersBefore,
     4: required list<RawReportEvent> history,
     5: required SurveyAnswers answersAfter,
     6: required Time beginTime,
     7: required Time finishTime,
+    8: optional string clientId,
 }
@@ -1,6 +1,7 @@
 #ifndef DB_SQL__SELECT__H
 #define DB_SQL__SELECT__H
 
+#include <cstdint>
 #include <string>
 #include <tuple>
 #include <vector>
@@ -22,13 +23,34 @@ class Select : public Where<Select<Fields...>, Fields...> {
 public:
     using return_type = std::tuple<Fields...>;
 
+    // ascending
+    template <class Column>
+    Select &orderBy(Column) {
+        using Field = typename Column::field_type;
+        static_assert(::utils::types::find_type<Field, Fields...>::value,
+                      "ordering field is not available in this sql query");
+        orderStmt = "ORDER BY " + utils::getColumnName<Field>();
+        return *this;
+    }
+
+    Select &limit(std::int32_t count) {
+        limitStmt = "LIMIT " + std::to_string(count);
+        return *this;
+    }
+
     std::string str() const {
-        boost::format stmt("SELECT %1%\nFROM %2%\n%3%");
+        boost::format stmt("SELECT %1%\nFROM %2%\n%3%\n%4%\n%5%");
         stmt % utils::asSqlList({utils::getColumnName<Fields>()...});
         stmt % utils::getTableName<Fields...>();
         stmt % this->whereStmt();
+        stmt % orderStmt;
+        stmt % limitStmt;
         return stmt.str();
     }
+
+private:
+    std::string orderStmt;
+    std::string limitStmt;
 };
 }
 }
@@ -11,9 +11,11 @@
  * - zoom levels
  *
  * zoom levels = [level, level, level, ...]
- * level = {imageWidth, imageHeight, tileSize, [[tile_name, ...], ...]}
+ * level = {imageWidth, imageHeight, tileSize, [[tile_name, ...], ...], [[tile_hash, ...], ...],
+ *          pack_name}
  * width, height, tileSize = int
- * tile_name = string
+ * tile_name, tile_hash, pack_name = string
+ * tile hashes and pack name are optional
  */
 
 namespace db {
@@ -33,14 +35,19 @@ struct Keys {
     static const char *height;
     static const char *tileSize;
     static const char *tiles;
+    static const char *hashes;
+    static const char *pack;
 };
 
 const char *Keys::width = "width";
 const char *Keys::height = "height";
 const char *Keys::tileSize = "tile_size";
 const char *Keys::tiles = "tiles";
+const char *Keys::hashes = "hashes";
+const char *Keys::pack = "pack";
 
 MapImages::ZoomLevelsData::ZoomLevel parseZoomLevel(const rapidjson::Value &json);
+std::vector<std::vector<std::string>> parseTiles(const rapidjson::Value &json);
 rapidjson::Value createZoomLevel(rapidjson::Document::AllocatorType &allocator,
                                  const MapImages::ZoomLevelsData::ZoomLevel &zoomLevel);
 }
@@ -66,19 +73,32 @@ MapImages::ZoomLevelsData::ZoomLevel parseZoomLevel(const rapidjson::Value &json
     res.imageWidth = parseInt(getNode(json, Keys::width));
     res.imageHeight = parseInt(getNode(json, Keys::height));
     res.tileSize = parseInt(getNode(json, Keys::tileSize));
-    res.tilesFilenames = parseArray(getNode(json, Keys::tiles), parseStringArray);
+    res.tilesFilenames = parseTiles(getNode(json, Keys::tiles));
+    if (auto hashes = parseOpt(json, Keys::hashes, parseTiles)) {
+        res.tilesHashes = hashes.value();
+    }
+    if (auto pack = parseOpt(json, Keys::pack, parseString)) {
+        res.packFilename = pack.value();
+    }
     return res;
 }
 
+std::vector<std::vector<std::string>> parseTiles(const rapidjson::Value &json) {
+    return parseArray(json, parseStringArray);
+}
+
 rapidjson::Value createZoomLevel(rapidjson::Document::AllocatorType &allocator,
                                  const MapImages::ZoomLevelsData::ZoomLevel &zoomLevel) {
     auto tiles = createArray(allocator, zoomLevel.tilesFilenames, createStringArray);
+    auto hashes = createArray(allocator, zoomLevel.tilesHashes, createStringArray);
 
     return createDictionary(allocator,
                             std::make_pair(Keys::width, createInt(zoomLevel.imageWidth)),
                             std::make_pair(Keys::height, createInt(zoomLevel.imageHeight)),
                             std::make_pair(Keys::tileSize, createInt(zoomLevel.tileSize)),
-                            std::make_pair(Keys::tiles, std::move(tiles)));
+                            std::make_pair(Keys::tiles, std::move(tiles)),
+                            std::make_pair(Keys::hashes, std::move(hashes)),
+                            std::make_pair(Keys::pack, createString(zoomLevel.packFilename)));
 }
 }
 }
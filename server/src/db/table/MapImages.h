@@ -19,6 +19,10 @@ struct MapImages {
             std::int32_t imageHeight;
             std::int32_t tileSize;
             std::vector<std::vector<std::string>> tilesFilenames;
+            // empty for maps saved without hashes
+            std::vector<std::vector<std::string>> tilesHashes;
+            // empty when tiles weren't packed
+            std::string packFilename;
         };
 
         ZoomLevelsData() = default;
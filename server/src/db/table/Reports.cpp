@@ -12,6 +12,7 @@
  * - state
  * - startDate
  * - finishDate
+ * - client id (unique, set by tablet)
  * - content (json)
  *
  * content = {beginTime, finishTime, events, surveyBefore, surveyAfter}
@@ -34,6 +35,7 @@ const std::string Reports::tableName = "reports";
 const std::string Reports::FieldID::columnName = "id";
 const std::string Reports::FieldReceiveDate::columnName = "receive_date";
 const std::string Reports::FieldExperimentID::columnName = "experiment_id";
+const std::string Reports::FieldClientID::columnName = "client_id";
 const std::string Reports::FieldContent::columnName = "content";
 
 namespace {
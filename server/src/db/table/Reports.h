@@ -72,6 +72,12 @@ struct Reports {
     };
     static constexpr detail::Column<FieldExperimentID> ExperimentID{};
 
+    struct FieldClientID : detail::OptField<std::string, Reports> {
+        using detail::OptField<std::string, Reports>::OptField;
+        static const std::string columnName;
+    };
+    static constexpr detail::Column<FieldClientID> ClientID{};
+
     struct FieldContent : detail::Field<ContentData, Reports> {
         using detail::Field<ContentData, Reports>::Field;
         static const std::string columnName;
@@ -80,7 +86,8 @@ struct Reports {
 
     static const std::string tableName;
 
-    using Sql = detail::SqlCore<FieldID, FieldReceiveDate, FieldExperimentID, FieldContent>;
+    using Sql = detail::
+        SqlCore<FieldID, FieldReceiveDate, FieldExperimentID, FieldClientID, FieldContent>;
 };
 }
 }
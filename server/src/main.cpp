@@ -3,9 +3,11 @@
 
 #include <thrift/concurrency/ThreadManager.h>
 #include <thrift/protocol/TBinaryProtocol.h>
+#include <thrift/protocol/TCompactProtocol.h>
 #include <thrift/server/TNonblockingServer.h>
 #include <thrift/transport/TServerSocket.h>
 #include <thrift/transport/TTransportUtils.h>
+#include <thrift/transport/TZlibTransport.h>
 #include <boost/optional.hpp>
 #include <boost/program_options.hpp>
 
@@ -21,7 +23,7 @@ INITIALIZE_EASYLOGGINGPP
 
 void configureLogger(const std::string &logOutPath);
 boost::optional<utils::Config> parseArguments(int argc, char *argv[]);
-void runServer(std::uint16_t port, db::Database &db);
+void runServer(const utils::Config &config, db::Database &db);
 
 int main(int argc, char *argv[]) {
     if (auto cfg = parseArguments(argc, argv)) {
@@ -37,7 +39,7 @@ int main(int argc, char *argv[]) {
 
         db::Database db(
             config.databaseUser, config.databaseName, config.databaseHost, config.databasePort);
-        runServer(config.serverPort, db);
+        runServer(config, db);
     }
 }
 
@@ -81,7 +83,7 @@ boost::optional<utils::Config> parseArguments(int argc, char *argv[]) {
     }
 }
 
-void runServer(std::uint16_t port, db::Database &db) {
+void runServer(const utils::Config &config, db::Database &db) {
     using namespace apache::thrift;
     using namespace apache::thrift::protocol;
     using namespace apache::thrift::transport;
@@ -90,7 +92,20 @@ void runServer(std::uint16_t port, db::Database &db) {
 
     boost::shared_ptr<::server::CommandHandler> handler(new ::server::CommandHandler(db));
     boost::shared_ptr<TProcessor> processor(new communication::ServerProcessor(handler));
-    boost::shared_ptr<TProtocolFactory> protocolFactory(new TBinaryProtocolFactory());
+
+    // frames are always used by nonblocking server, compression is applied to frame content
+    boost::shared_ptr<TProtocolFactory> protocolFactory;
+    if (config.serverProtocol == "compact") {
+        protocolFactory.reset(new TCompactProtocolFactory());
+    } else {
+        protocolFactory.reset(new TBinaryProtocolFactory());
+    }
+    boost::shared_ptr<TTransportFactory> transportFactory;
+    if (config.serverCompression == "zlib") {
+        transportFactory.reset(new TZlibTransportFactory());
+    } else {
+        transportFactory.reset(new TTransportFactory());
+    }
 
     boost::shared_ptr<ThreadManager> threadManager = ThreadManager::newSimpleThreadManager(4);
     boost::shared_ptr<PosixThreadFactory> threadFactory =
@@ -98,11 +113,18 @@ void runServer(std::uint16_t port, db::Database &db) {
     threadManager->threadFactory(threadFactory);
     threadManager->start();
 
-    TNonblockingServer server(processor, protocolFactory, port, threadManager);
+    TNonblockingServer server(processor,
+                              transportFactory,
+                              transportFactory,
+                              protocolFactory,
+                              protocolFactory,
+                              config.serverPort,
+                              threadManager);
     handler->setServer(&server);
 
     LOG(INFO) << "Starting server...";
-    LOG(INFO) << "Port: " << port;
+    LOG(INFO) << "Port: " << config.serverPort;
+    LOG(INFO) << "Wire format: " << config.serverProtocol << "/" << config.serverCompression;
 
     server.serve();
 }
@@ -43,6 +43,8 @@ std::string toDbType(Counters::Type type) {
             return "last_exhibit_version";
         case Counters::Type::LastDeletedExhibitVersion:
             return "last_deleted_exhibit_version";
+        case Counters::Type::LastPurgedExhibitVersion:
+            return "last_purged_exhibit_version";
     }
 }
 }
@@ -12,7 +12,12 @@ namespace repository {
 
 class Counters {
 public:
-    enum class Type { LastExhibitVersion, LastDeletedExhibitVersion, LastReportID };
+    enum class Type {
+        LastExhibitVersion,
+        LastDeletedExhibitVersion,
+        LastPurgedExhibitVersion,
+        LastReportID
+    };
 
     Counters(db::DatabaseSession &session);
 
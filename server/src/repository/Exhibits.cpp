@@ -55,6 +55,7 @@ void Exhibits::updateReferenceCount(std::int32_t ID, std::int32_t diff) {
 void Exhibits::refresh() {
     auto sql = Table::Sql::del().where(Table::IsDeleted == true && Table::RefCount == 0);
     session.execute(sql);
+    Counters{session}.set(CounterType::LastPurgedExhibitVersion, getCurrentVersion());
 }
 
 std::vector<std::int32_t> Exhibits::getAllIDs() {
@@ -116,14 +117,44 @@ std::vector<Exhibit> Exhibits::getAllNewerThan(std::int32_t version) {
     return result;
 }
 
+std::vector<Exhibit> Exhibits::getPageNewerThanWithDeleted(std::int32_t version,
+                                                          std::int32_t limit) {
+    auto sql =
+        Table::Sql::select().where(Table::Version > version).orderBy(Table::Version).limit(limit);
+    auto result = std::vector<Exhibit>{};
+    utils::transform(session.getResults(sql), result, fromDB);
+    if (result.empty() || static_cast<std::int32_t>(result.size()) < limit) {
+        return result;
+    }
+
+    // page never ends in the middle of a version, the last one is fetched whole
+    auto lastVersion = result.back().version;
+    while (!result.empty() && result.back().version == lastVersion) {
+        result.pop_back();
+    }
+    auto lastVersionSql = Table::Sql::select().where(Table::Version == lastVersion);
+    utils::transform(session.getResults(lastVersionSql), result, fromDB);
+    return result;
+}
+
+bool Exhibits::hasNewerThanWithDeleted(std::int32_t version) {
+    auto sql = db::sql::Select<Table::FieldID, Table::FieldVersion>{}
+                   .where(Table::Version > version)
+                   .limit(1);
+    return static_cast<bool>(session.getResult(sql));
+}
+
 void Exhibits::remove(std::int32_t ID) {
     checkID(ID);
 
-    auto sql = Table::Sql::update().where(Table::ID == ID).set(Table::IsDeleted, true);
-    session.execute(sql);
-
     auto curVersion = Counters{session}.increment(CounterType::LastExhibitVersion);
     Counters{session}.set(CounterType::LastDeletedExhibitVersion, curVersion);
+
+    auto sql = Table::Sql::update()
+                   .where(Table::ID == ID)
+                   .set(Table::IsDeleted, true)
+                   .set(Table::Version, curVersion);
+    session.execute(sql);
 }
 
 void Exhibits::insert(Exhibits::Exhibit *exhibit) {
@@ -143,7 +174,11 @@ void Exhibits::setRgbHex(std::int32_t ID, std::int32_t newRgbHex) {
     checkID(ID);
     checkRgbHex(newRgbHex);
 
-    auto sql = Table::Sql::update().set(Table::RgbHex, newRgbHex).where(Table::ID == ID);
+    auto version = Counters{session}.increment(CounterType::LastExhibitVersion);
+    auto sql = Table::Sql::update()
+                   .where(Table::ID == ID)
+                   .set(Table::Version, version)
+                   .set(Table::RgbHex, newRgbHex);
     session.execute(sql);
 }
 
@@ -188,6 +223,10 @@ std::int32_t Exhibits::getLastDeletedVersion() {
     return Counters{session}.get(repository::CounterType::LastDeletedExhibitVersion);
 }
 
+std::int32_t Exhibits::getLastPurgedVersion() {
+    return Counters{session}.get(repository::CounterType::LastPurgedExhibitVersion);
+}
+
 void Exhibits::checkID(std::int32_t ID) {
     auto sql = db::sql::Select<Table::FieldID, Table::FieldIsDeleted>{}.where(
         Table::ID == ID && Table::IsDeleted == false);
@@ -256,6 +295,7 @@ Exhibits::Exhibit fromDB(const Table::Sql::out_t &exhibit) {
     result.name = std::get<Table::FieldName>(exhibit).value;
     result.version = std::get<Table::FieldVersion>(exhibit).value;
     result.rgbHex = std::get<Table::FieldRgbHex>(exhibit).value;
+    result.isDeleted = std::get<Table::FieldIsDeleted>(exhibit).value;
 
     auto x = std::get<Table::FieldFrameX>(exhibit).value;
     auto y = std::get<Table::FieldFrameY>(exhibit).value;
@@ -19,7 +19,8 @@ namespace repository {
  *
  * Versioning:
  * `insert`, `set*` cause version update
- * `remove` causes version and lastDeletedVersion update
+ * `remove` causes version and lastDeletedVersion update, removed exhibit gets the new version
+ * `refresh` causes lastPurgedVersion update
  *
  * Deletion:
  * `remove` makes exhibit invisible to the user, but it will stay in database
@@ -41,12 +42,15 @@ public:
         std::int32_t rgbHex;
         std::int32_t version;
         boost::optional<Frame> frame;
+        bool isDeleted = false;
     };
 
     Exhibits(db::DatabaseSession &session);
 
     std::int32_t getCurrentVersion();
     std::int32_t getLastDeletedVersion();
+    // removed exhibits with lower or equal version may be already deleted from database
+    std::int32_t getLastPurgedVersion();
 
     void incReferenceCount(std::int32_t ID);
     void decReferenceCount(std::int32_t ID);
@@ -61,6 +65,11 @@ public:
     std::vector<Exhibit> getAll();
     std::vector<Exhibit> getAllWithDeleted();
     std::vector<Exhibit> getAllNewerThan(std::int32_t version);
+    // first `limit` exhibits ordered by version and the rest of the last version,
+    // removed exhibits are returned with `isDeleted` set
+    std::vector<Exhibit> getPageNewerThanWithDeleted(std::int32_t version, std::int32_t limit);
+    // also counts removed exhibits
+    bool hasNewerThanWithDeleted(std::int32_t version);
 
     void insert(Exhibit *exhibit);
 
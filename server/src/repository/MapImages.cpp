@@ -68,6 +68,8 @@ Table::ZoomLevelsData::ZoomLevel zoomLevelToDB(const MapImages::MapImage::ZoomLe
     res.imageHeight = zoomLevel.imageHeight;
     res.tileSize = zoomLevel.tileSize;
     res.tilesFilenames = zoomLevel.tilesFilenames;
+    res.tilesHashes = zoomLevel.tilesHashes;
+    res.packFilename = zoomLevel.packFilename;
     return res;
 }
 
@@ -88,6 +90,8 @@ MapImages::MapImage::ZoomLevel zoomLevelFromDB(const Table::ZoomLevelsData::Zoom
     res.imageHeight = zoomLevel.imageHeight;
     res.tileSize = zoomLevel.tileSize;
     res.tilesFilenames = zoomLevel.tilesFilenames;
+    res.tilesHashes = zoomLevel.tilesHashes;
+    res.packFilename = zoomLevel.packFilename;
     return res;
 }
 }
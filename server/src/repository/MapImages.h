@@ -20,6 +20,10 @@ public:
             std::int32_t tileSize;
 
             std::vector<std::vector<std::string>> tilesFilenames;
+            // same layout as tilesFilenames, empty when unknown
+            std::vector<std::vector<std::string>> tilesHashes;
+            // empty when there is no pack
+            std::string packFilename;
         };
 
         std::int32_t floor;
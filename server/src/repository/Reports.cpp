@@ -39,6 +39,12 @@ bool Reports::exist(std::int32_t ID) {
     return (bool)session.getResult(sql);
 }
 
+bool Reports::existWithClientID(const std::string &clientID) {
+    auto sql = db::sql::Select<Table::FieldID, Table::FieldClientID>{}.where(Table::ClientID ==
+                                                                             clientID);
+    return (bool)session.getResult(sql);
+}
+
 Reports::Report Reports::getF(std::int32_t ID) {
     if (auto report = get(ID)) {
         return report.value();
@@ -241,6 +247,7 @@ Table::Sql::in_t toDB(const Reports::Report &report) {
     return std::make_tuple(Table::FieldID{report.ID},
                            Table::FieldReceiveDate{boost::gregorian::day_clock::local_day()},
                            Table::FieldExperimentID{report.experimentID},
+                           Table::FieldClientID{report.clientID},
                            Table::FieldContent{content});
 }
 
@@ -274,6 +281,7 @@ Reports::Report fromDB(const Table::Sql::out_t &report) {
     res.ID = std::get<Table::FieldID>(report).value;
     res.receiveDate = std::get<Table::FieldReceiveDate>(report).value;
     res.experimentID = std::get<Table::FieldExperimentID>(report).value;
+    res.clientID = std::get<Table::FieldClientID>(report).value;
 
     auto content = std::get<Table::FieldContent>(report).value;
     res.beginTime = timeFromDB(content.beginTime);
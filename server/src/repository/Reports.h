@@ -51,6 +51,9 @@ public:
         // foreign key
         std::int32_t experimentID;
 
+        // unique, generated by tablet
+        boost::optional<std::string> clientID;
+
         utils::TimePoint beginTime;
         utils::TimePoint finishTime;
 
@@ -62,6 +65,7 @@ public:
     Reports(db::DatabaseSession &session);
 
     bool exist(std::int32_t ID);
+    bool existWithClientID(const std::string &clientID);
 
     boost::optional<Report> get(std::int32_t ID);
 
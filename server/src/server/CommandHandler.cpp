@@ -96,6 +96,21 @@ void CommandHandler::getNewExhibits(communication::NewExhibitsResponse &response
     LOG(INFO) << __func__ << " end";
 }
 
+void CommandHandler::getExhibitChanges(communication::ExhibitChangesResponse &response,
+                                       const communication::ExhibitChangesRequest &request) {
+    LOG(INFO) << __func__ << " start";
+    LOG(INFO) << "input: " << request;
+
+    withExceptionTranslation([&]() {
+        auto input = io::input::ExhibitChangesRequest{request};
+        auto output = command::ExhibitCommands{db}.getChanges(input);
+        response = output.toThrift();
+    });
+
+    LOG(INFO) << "output: " << response;
+    LOG(INFO) << __func__ << " end";
+}
+
 void CommandHandler::createExhibit(communication::Exhibit &response,
                                    const communication::CreateExhibitRequest &request) {
     LOG(INFO) << __func__ << " start";
@@ -173,6 +188,22 @@ void CommandHandler::getCurrentExperiment(communication::CurrentExperimentRespon
     LOG(INFO) << __func__ << " end";
 }
 
+void CommandHandler::getCurrentExperimentIfChanged(
+    communication::CurrentExperimentResponse &response,
+    const communication::CurrentExperimentRequest &request) {
+    LOG(INFO) << __func__ << " start";
+    LOG(INFO) << "input: " << request;
+
+    withExceptionTranslation([&]() {
+        auto input = io::input::CurrentExperimentRequest{request};
+        auto output = command::ExperimentCommands{db}.getCurrentIfChanged(input);
+        response = output.toThrift();
+    });
+
+    LOG(INFO) << "output: " << response;
+    LOG(INFO) << __func__ << " end";
+}
+
 void CommandHandler::createExperiment(const communication::CreateExperimentRequest &request) {
     LOG(INFO) << __func__ << " start";
     LOG(INFO) << "input: " << request;
@@ -312,6 +343,31 @@ void CommandHandler::saveReport(const communication::RawReport &report) {
     LOG(INFO) << __func__ << " end";
 }
 
+void CommandHandler::getIdsForNewReports(std::vector<int32_t> &response, const int32_t count) {
+    LOG(INFO) << __func__ << " start";
+    LOG(INFO) << "input: " << count;
+
+    withExceptionTranslation([&]() { response = command::ReportCommands{db}.reserveIDs(count); });
+
+    LOG(INFO) << "output: " << response;
+    LOG(INFO) << __func__ << " end";
+}
+
+void CommandHandler::saveReports(const std::vector<communication::RawReport> &reports) {
+    LOG(INFO) << __func__ << " start";
+    LOG(INFO) << "input: " << reports.size() << " reports";
+
+    withExceptionTranslation([&]() {
+        auto input = std::vector<io::input::RawReport>{};
+        for (const auto &report : reports) {
+            input.push_back(io::input::RawReport{report});
+        }
+        command::ReportCommands{db}.save(input);
+    });
+
+    LOG(INFO) << __func__ << " end";
+}
+
 void CommandHandler::getAllReportsForExperiment(std::vector<communication::ReportInfo> &response,
                                                 const int32_t experimentId) {
     LOG(INFO) << __func__ << " start";
@@ -35,6 +35,8 @@ public:
 
     virtual void getNewExhibits(communication::NewExhibitsResponse &response,
                                 const communication::NewExhibitsRequest &request) override;
+    virtual void getExhibitChanges(communication::ExhibitChangesResponse &response,
+                                   const communication::ExhibitChangesRequest &request) override;
     virtual void createExhibit(communication::Exhibit &response,
                                const communication::CreateExhibitRequest &request) override;
     virtual void getAllExhibits(std::vector<communication::Exhibit> &response) override;
@@ -44,6 +46,9 @@ public:
     virtual void removeExhibit(const int32_t exhibitId) override;
 
     virtual void getCurrentExperiment(communication::CurrentExperimentResponse &response) override;
+    virtual void getCurrentExperimentIfChanged(
+        communication::CurrentExperimentResponse &response,
+        const communication::CurrentExperimentRequest &request) override;
     virtual void createExperiment(const communication::CreateExperimentRequest &request) override;
     virtual void updateExperiment(const int32_t experimentId,
                                   const communication::CreateExperimentRequest &request) override;
@@ -60,6 +65,8 @@ public:
 
     virtual int32_t getIdForNewReport() override;
     virtual void saveReport(const communication::RawReport &report) override;
+    virtual void getIdsForNewReports(std::vector<int32_t> &response, const int32_t count) override;
+    virtual void saveReports(const std::vector<communication::RawReport> &reports) override;
     virtual void getAllReportsForExperiment(std::vector<communication::ReportInfo> &response,
                                             const int32_t experimentId) override;
     virtual void getExcelReport(communication::Filename &response, const int32_t reportId) override;
@@ -58,6 +58,49 @@ NewExhibitsResponse ExhibitCommands::getNew(const NewExhibitsRequest &input) {
     return response;
 }
 
+ExhibitChangesResponse ExhibitCommands::getChanges(const ExhibitChangesRequest &input) {
+    static const std::int32_t maxPageSize = 500;
+
+    if (input.pageSize <= 0 || input.pageSize > maxPageSize) {
+        throw io::InvalidInput{"incorrect page size"};
+    }
+
+    auto response = ExhibitChangesResponse{};
+    auto exhibits = std::vector<repository::Exhibit>{};
+
+    db.execute([&](db::DatabaseSession &session) {
+        auto repo = repository::Exhibits{session};
+        // tombstones older than last purge are gone, so client can't tell what it has to remove
+        response.resync = input.resync || !input.afterVersion ||
+                          input.afterVersion.value() < repo.getLastPurgedVersion();
+        auto afterVersion = input.afterVersion.value_or(0);
+        if (response.resync && !input.resync) {
+            afterVersion = 0;
+        }
+        // many exhibits can share a version, page never ends in the middle of them
+        // because cursor is the last version on the page
+        exhibits = repo.getPageNewerThanWithDeleted(afterVersion, input.pageSize);
+        response.hasMore =
+            !exhibits.empty() && repo.hasNewerThanWithDeleted(exhibits.back().version);
+        response.cursor = response.hasMore ? exhibits.back().version : repo.getCurrentVersion();
+        // only the last page of resync lists existing exhibits
+        if (response.resync && !response.hasMore) {
+            response.existingExhibitIDs = repo.getAllIDs();
+        }
+    });
+
+    for (auto &e : exhibits) {
+        auto change = ExhibitChange{};
+        change.exhibitID = e.ID;
+        change.version = e.version;
+        if (!e.isDeleted) {
+            change.exhibit = Exhibit{e};
+        }
+        response.changes.push_back(change);
+    }
+    return response;
+}
+
 void ExhibitCommands::setFrame(const SetExhibitFrameRequest &input) {
     db.execute([&](db::DatabaseSession &session) {
         auto exhibitsRepo = repository::Exhibits{session};
@@ -12,10 +12,12 @@
 
 #include <server/io/MapFrame.h>
 #include <server/io/input/CreateExhibitRequest.h>
+#include <server/io/input/ExhibitChangesRequest.h>
 #include <server/io/input/NewExhibitsRequest.h>
 #include <server/io/input/SetExhibitFrameRequest.h>
 #include <server/io/input/UpdateExhibitRequest.h>
 #include <server/io/output/Exhibit.h>
+#include <server/io/output/ExhibitChangesResponse.h>
 #include <server/io/output/NewExhibitsResponse.h>
 
 #include "Command.h"
@@ -34,6 +36,7 @@ public:
 
     std::vector<Exhibit> getAll();
     NewExhibitsResponse getNew(const NewExhibitsRequest &input);
+    ExhibitChangesResponse getChanges(const ExhibitChangesRequest &input);
 
     void setFrame(const SetExhibitFrameRequest &input);
     Exhibit update(const UpdateExhibitRequest &input);
@@ -1,5 +1,11 @@
 #include <algorithm>
 
+#include <boost/crc.hpp>
+#include <boost/make_shared.hpp>
+
+#include <thrift/protocol/TBinaryProtocol.h>
+#include <thrift/transport/TBufferTransports.h>
+
 #include <repository/Exhibits.h>
 
 #include <server/io/InvalidInput.h>
@@ -10,6 +16,26 @@
 namespace server {
 namespace command {
 
+namespace {
+// checksum of binary encoding, which is the same for the same experiment
+std::int64_t contentVersion(const communication::Experiment &experiment) {
+    using apache::thrift::protocol::TBinaryProtocol;
+    using apache::thrift::transport::TMemoryBuffer;
+
+    auto buffer = boost::make_shared<TMemoryBuffer>();
+    TBinaryProtocol protocol{buffer};
+    experiment.write(&protocol);
+
+    std::uint8_t *data;
+    std::uint32_t size;
+    buffer->getBuffer(&data, &size);
+
+    auto crc = boost::crc_32_type{};
+    crc.process_bytes(data, size);
+    return crc.checksum();
+}
+}
+
 ExperimentCommands::ExperimentCommands(db::Database &db) : db(db) {
 }
 
@@ -103,6 +129,22 @@ CurrentExperimentResponse ExperimentCommands::getCurrent() {
     return result;
 }
 
+CurrentExperimentResponse ExperimentCommands::getCurrentIfChanged(
+    const CurrentExperimentRequest &input) {
+    auto result = getCurrent();
+    if (!result.experiment) {
+        return result;
+    }
+
+    auto version = contentVersion(result.experiment.value().toThrift());
+    result.contentVersion = version;
+    if (input.experimentID == result.experiment.value().ID && input.contentVersion == version) {
+        result.experiment = boost::none;
+        result.unchanged = true;
+    }
+    return result;
+}
+
 repository::Experiments::LazyExperiment ExperimentCommands::toRepo(
     const CreateExperimentRequest &request) const {
     auto res = repository::Experiments::LazyExperiment{};
@@ -12,6 +12,7 @@
 
 #include <server/io/input/CloneExperimentRequest.h>
 #include <server/io/input/CreateExperimentRequest.h>
+#include <server/io/input/CurrentExperimentRequest.h>
 #include <server/io/input/QuestionsIdsList.h>
 #include <server/io/output/CurrentExperimentResponse.h>
 #include <server/io/output/SingleExperimentInfo.h>
@@ -45,6 +46,8 @@ public:
 
     // get for android
     CurrentExperimentResponse getCurrent();
+    // doesn't contain experiment if it's the same as the one described by input
+    CurrentExperimentResponse getCurrentIfChanged(const CurrentExperimentRequest &input);
 
 private:
     repository::Experiments::LazyExperiment toRepo(const CreateExperimentRequest &request) const;
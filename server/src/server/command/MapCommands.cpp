@@ -1,4 +1,10 @@
+#include <cstdlib>
+#include <fstream>
+#include <iterator>
+#include <stdexcept>
+
 #include <Magick++.h>
+#include <boost/crc.hpp>
 #include <boost/filesystem.hpp>
 #include <boost/format.hpp>
 
@@ -19,6 +25,7 @@ namespace command {
 
 const std::vector<MapCommands::ZoomLevelInfo> MapCommands::zoomLevels = {
     {1, 1024, 64}, {2, 2048, 128}, {3, 4096, 256}, {4, 8192, 512}};
+const std::string MapCommands::tilesPackFilename = "tiles.zip";
 volatile std::atomic_flag MapCommands::inProgress = ATOMIC_FLAG_INIT;
 
 MapCommands::MapCommands(db::Database &db) : db(db) {
@@ -172,6 +179,19 @@ repository::MapImage::ZoomLevel MapCommands::createZoomLevelTiles(
     zoomLevel.imageHeight = (std::int32_t)imgProc->height();
     zoomLevel.tilesFilenames = tiles;
 
+    for (const auto &row : tiles) {
+        auto hashes = std::vector<std::string>{};
+        for (const auto &filename : row) {
+            hashes.push_back(tileHash(dst / filename));
+        }
+        zoomLevel.tilesHashes.push_back(hashes);
+    }
+
+    LOG(INFO) << "Packing tiles of zoom level " << zoomLevelInfo.levelIdx;
+    if (createTilesPack(dst)) {
+        zoomLevel.packFilename = filenamePrefix + tilesPackFilename;
+    }
+
     // add prefix to each filename
     for (auto &row : zoomLevel.tilesFilenames) {
         for (auto &filename : row) {
@@ -188,5 +208,33 @@ void MapCommands::prepareImageProcessor(const ZoomLevelInfo &zoomLevel) {
     imgProc->setTileSize(zoomLevel.tileSize);
     imgProc->addFrameToBeDivisibleBy(zoomLevel.tileSize);
 }
+
+std::string MapCommands::tileHash(const boost::filesystem::path &path) {
+    std::ifstream file{path.string(), std::ios::binary};
+    if (!file) {
+        throw std::runtime_error{"cannot read tile " + path.string()};
+    }
+    std::vector<char> content((std::istreambuf_iterator<char>(file)),
+                              std::istreambuf_iterator<char>());
+
+    auto crc = boost::crc_32_type{};
+    crc.process_bytes(content.data(), content.size());
+    return (boost::format("%d-%08x") % content.size() % crc.checksum()).str();
+}
+
+bool MapCommands::createTilesPack(const boost::filesystem::path &dst) const {
+    // jpgs don't compress, stored entries can be read while downloading
+    auto cmd = boost::format("cd %1% && zip -0 -q -r -D %2% . -i '*/*.jpg'") % dst.string() %
+               tilesPackFilename;
+    auto cmdStr = cmd.str();
+    LOG(INFO) << "Executing: " << cmdStr;
+    system(cmdStr.c_str());
+
+    if (!boost::filesystem::is_regular_file(dst / tilesPackFilename)) {
+        LOG(INFO) << "Packing tiles in " << dst << " failed";
+        return false;
+    }
+    return true;
+}
 }
 }
\ No newline at end of file
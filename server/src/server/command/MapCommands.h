@@ -40,6 +40,7 @@ private:
         std::size_t tileSize;
     };
     static const std::vector<ZoomLevelInfo> zoomLevels;
+    static const std::string tilesPackFilename;
     static volatile std::atomic_flag inProgress;
 
     void removeOldData(std::int32_t floor);
@@ -64,6 +65,13 @@ private:
 
     void prepareImageProcessor(const ZoomLevelInfo &zoomLevel);
 
+    // identifies content of the tile, lets tablets skip tiles which didn't change
+    static std::string tileHash(const boost::filesystem::path &path);
+
+    // packs tiles from {dst}/{x}/{y}.jpg into {dst}/{tilesPackFilename}
+    // returns false when packing failed, tiles are then served only one by one
+    bool createTilesPack(const boost::filesystem::path &dst) const;
+
     std::unique_ptr<::utils::ImageProcessor> imgProc;
     db::Database &db;
 };
@@ -9,6 +9,7 @@
 #include <repository/Counters.h>
 #include <repository/Reports.h>
 
+#include <server/io/InvalidInput.h>
 #include <server/utils/PathHelper.h>
 
 #include "ReportCommands.h"
@@ -16,20 +17,47 @@
 namespace server {
 namespace command {
 
+const std::int32_t ReportCommands::maxReservedIDs = 100;
+const std::size_t ReportCommands::maxClientIDLength = 64;
 std::mutex ReportCommands::excelGenerationLock{};
 
 ReportCommands::ReportCommands(db::Database &db) : db(db) {
 }
 
 void ReportCommands::save(const server::io::input::RawReport &input) {
+    db.execute([&](db::DatabaseSession &session) { save(session, input); });
+}
+
+void ReportCommands::save(const std::vector<RawReport> &input) {
     db.execute([&](db::DatabaseSession &session) {
-        auto repo = repository::Reports{session};
-        if (!repo.exist(input.ID)) {
-            repo.insert(input.toRepo());
+        for (const auto &report : input) {
+            save(session, report);
         }
     });
 }
 
+void ReportCommands::save(db::DatabaseSession &session, const RawReport &input) {
+    auto repo = repository::Reports{session};
+    if (input.clientID) {
+        auto &clientID = input.clientID.value();
+        if (clientID.empty() || clientID.size() > maxClientIDLength) {
+            throw io::InvalidInput{"incorrect report client ID"};
+        }
+        if (!repo.existWithClientID(clientID)) {
+            auto report = input.toRepo();
+            report.ID = repository::Counters{session}.increment(
+                repository::CounterType::LastReportID);
+            repo.insert(report);
+        }
+    } else if (input.ID) {
+        if (!repo.exist(input.ID.value())) {
+            repo.insert(input.toRepo());
+        }
+    } else {
+        throw io::InvalidInput{"report without ID"};
+    }
+}
+
 std::int32_t ReportCommands::reserveID() {
     return db.execute([](db::DatabaseSession &session) {
         auto repo = repository::Counters{session};
@@ -37,6 +65,24 @@ std::int32_t ReportCommands::reserveID() {
     });
 }
 
+std::vector<std::int32_t> ReportCommands::reserveIDs(std::int32_t count) {
+    if (count <= 0 || count > maxReservedIDs) {
+        throw io::InvalidInput{"incorrect number of report IDs to reserve"};
+    }
+
+    return db.execute([&](db::DatabaseSession &session) {
+        auto repo = repository::Counters{session};
+        auto last = repo.get(repository::CounterType::LastReportID);
+        repo.set(repository::CounterType::LastReportID, last + count);
+
+        auto result = std::vector<std::int32_t>{};
+        for (std::int32_t i = 1; i <= count; i++) {
+            result.push_back(last + i);
+        }
+        return result;
+    });
+}
+
 std::vector<ReportInfo> ReportCommands::getAllReportsForExperiment(std::int32_t experimentID) {
     auto repoInfos = db.execute([&](db::DatabaseSession &session) {
         auto repo = repository::Reports{session};
@@ -3,6 +3,7 @@
 
 #include <cstdint>
 #include <mutex>
+#include <vector>
 
 #include <utils/excel/ExcelProcessor.h>
 
@@ -24,13 +25,22 @@ public:
     ReportCommands(db::Database &db);
 
     void save(const RawReport &input);
+    // all reports are saved in one transaction
+    void save(const std::vector<RawReport> &input);
     std::int32_t reserveID();
+    std::vector<std::int32_t> reserveIDs(std::int32_t count);
 
     std::vector<ReportInfo> getAllReportsForExperiment(std::int32_t experimentID);
     std::string getExcelReport(std::int32_t reportID);
     std::string getCombinedExcelReport(std::int32_t experimentID);
 
 private:
+    static const std::int32_t maxReservedIDs;
+    static const std::size_t maxClientIDLength;
+
+    // report with client ID gets next report ID, the same report sent again is ignored
+    void save(db::DatabaseSession &session, const RawReport &input);
+
     static std::mutex excelGenerationLock;
 
     std::string createExcelReport(::utils::excel::ExcelProcessor *proc,
@@ -0,0 +1,18 @@
+#include "CurrentExperimentRequest.h"
+
+namespace server {
+namespace io {
+namespace input {
+
+CurrentExperimentRequest::CurrentExperimentRequest(
+    const communication::CurrentExperimentRequest &thrift) {
+    if (thrift.__isset.experimentId) {
+        experimentID = thrift.experimentId;
+    }
+    if (thrift.__isset.contentVersion) {
+        contentVersion = thrift.contentVersion;
+    }
+}
+}
+}
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+#ifndef SERVER_IO_INPUT__CURRENT_EXPERIMENT_REQUEST__H
+#define SERVER_IO_INPUT__CURRENT_EXPERIMENT_REQUEST__H
+
+#include <cstdint>
+
+#include <boost/optional.hpp>
+
+#include <communication/structs_types.h>
+
+namespace server {
+namespace io {
+namespace input {
+
+struct CurrentExperimentRequest {
+    CurrentExperimentRequest(const communication::CurrentExperimentRequest &thrift);
+
+    boost::optional<std::int32_t> experimentID;
+    boost::optional<std::int64_t> contentVersion;
+};
+}
+}
+}
+
+#endif
\ No newline at end of file
@@ -0,0 +1,18 @@
+#include "ExhibitChangesRequest.h"
+
+namespace server {
+namespace io {
+namespace input {
+
+ExhibitChangesRequest::ExhibitChangesRequest(const communication::ExhibitChangesRequest &thrift)
+    : pageSize(thrift.pageSize) {
+    if (thrift.__isset.afterVersion) {
+        afterVersion = thrift.afterVersion;
+    }
+    if (thrift.__isset.resync) {
+        resync = thrift.resync;
+    }
+}
+}
+}
+}
\ No newline at end of file
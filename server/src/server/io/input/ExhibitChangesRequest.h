@@ -0,0 +1,25 @@
+#ifndef SERVER_IO_INPUT__EXHIBIT_CHANGES_REQUEST__H
+#define SERVER_IO_INPUT__EXHIBIT_CHANGES_REQUEST__H
+
+#include <cstdint>
+
+#include <boost/optional.hpp>
+
+#include <communication/structs_types.h>
+
+namespace server {
+namespace io {
+namespace input {
+
+struct ExhibitChangesRequest {
+    ExhibitChangesRequest(const communication::ExhibitChangesRequest &thrift);
+
+    boost::optional<std::int32_t> afterVersion;
+    std::int32_t pageSize;
+    bool resync = false;
+};
+}
+}
+}
+
+#endif
\ No newline at end of file
@@ -6,7 +6,6 @@ namespace input {
 
 RawReport::RawReport(const communication::RawReport &thrift)
     : experimentId(thrift.experimentId),
-      ID(thrift.reportId),
       beginTime(thrift.beginTime),
       finishTime(thrift.finishTime),
       answersBefore(thrift.answersBefore),
@@ -14,6 +13,12 @@ RawReport::RawReport(const communication::RawReport &thrift)
     for (const auto &event : thrift.history) {
         history.emplace_back(event);
     }
+    if (thrift.__isset.reportId) {
+        ID = thrift.reportId;
+    }
+    if (thrift.__isset.clientId) {
+        clientID = thrift.clientId;
+    }
 }
 
 RawReport::Event::Event(const communication::RawReportEvent &thrift)
@@ -37,7 +42,8 @@ RawReport::SurveyAnswers::SurveyAnswers(const communication::SurveyAnswers &thri
 
 repository::Report RawReport::toRepo() const {
     auto res = repository::Report{};
-    res.ID = ID;
+    res.ID = ID.value_or(0);
+    res.clientID = clientID;
     res.experimentID = experimentId;
     res.beginTime = beginTime.toRepo();
     res.finishTime = finishTime.toRepo();
@@ -47,7 +47,9 @@ struct RawReport {
     repository::Report toRepo() const;
 
     std::int32_t experimentId;
-    std::int32_t ID;
+    // at least one of them is set
+    boost::optional<std::int32_t> ID;
+    boost::optional<std::string> clientID;
 
     Time beginTime;
     Time finishTime;
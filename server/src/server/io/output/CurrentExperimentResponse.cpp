@@ -9,6 +9,12 @@ communication::CurrentExperimentResponse CurrentExperimentResponse::toThrift() c
     if (experiment) {
         res.__set_experiment(experiment.value().toThrift());
     }
+    if (contentVersion) {
+        res.__set_contentVersion(contentVersion.value());
+    }
+    if (unchanged) {
+        res.__set_unchanged(true);
+    }
     return res;
 }
 }
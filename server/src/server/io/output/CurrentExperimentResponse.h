@@ -1,6 +1,8 @@
 #ifndef SERVER_IO_OUTPUT__CURRENT_EXPERIMENT_RESPONSE__H
 #define SERVER_IO_OUTPUT__CURRENT_EXPERIMENT_RESPONSE__H
 
+#include <cstdint>
+
 #include <boost/optional.hpp>
 
 #include <communication/structs_types.h>
@@ -15,6 +17,8 @@ struct CurrentExperimentResponse {
     communication::CurrentExperimentResponse toThrift() const;
 
     boost::optional<Experiment> experiment;
+    boost::optional<std::int64_t> contentVersion;
+    bool unchanged = false;
 };
 }
 }
@@ -0,0 +1,32 @@
+#include "ExhibitChangesResponse.h"
+
+namespace server {
+namespace io {
+namespace output {
+
+communication::ExhibitChange ExhibitChange::toThrift() const {
+    auto res = communication::ExhibitChange{};
+    res.exhibitId = exhibitID;
+    res.version = version;
+    if (exhibit) {
+        res.__set_exhibit(exhibit.value().toThrift());
+    }
+    return res;
+}
+
+communication::ExhibitChangesResponse ExhibitChangesResponse::toThrift() const {
+    auto res = communication::ExhibitChangesResponse{};
+    for (auto &change : changes) {
+        res.changes.push_back(change.toThrift());
+    }
+    res.cursor = cursor;
+    res.hasMore = hasMore;
+    res.resync = resync;
+    if (existingExhibitIDs) {
+        res.__set_existingExhibitIds(existingExhibitIDs.value());
+    }
+    return res;
+}
+}
+}
+}
\ No newline at end of file
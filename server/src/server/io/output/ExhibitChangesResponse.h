@@ -0,0 +1,39 @@
+#ifndef SERVER_IO_OUTPUT__EXHIBIT_CHANGES_RESPONSE__H
+#define SERVER_IO_OUTPUT__EXHIBIT_CHANGES_RESPONSE__H
+
+#include <cstdint>
+#include <vector>
+
+#include <boost/optional.hpp>
+
+#include <communication/structs_types.h>
+
+#include <server/io/output/Exhibit.h>
+
+namespace server {
+namespace io {
+namespace output {
+
+struct ExhibitChange {
+    communication::ExhibitChange toThrift() const;
+
+    std::int32_t exhibitID;
+    std::int32_t version;
+    // not set for removed exhibit
+    boost::optional<Exhibit> exhibit;
+};
+
+struct ExhibitChangesResponse {
+    communication::ExhibitChangesResponse toThrift() const;
+
+    std::vector<ExhibitChange> changes;
+    std::int32_t cursor;
+    bool hasMore;
+    bool resync;
+    boost::optional<std::vector<std::int32_t>> existingExhibitIDs;
+};
+}
+}
+}
+
+#endif
\ No newline at end of file
@@ -32,6 +32,12 @@ MapImage::ZoomLevel::ZoomLevel(const repository::MapImage::ZoomLevel &repo) {
             entry = url;
         }
     }
+    if (!repo.tilesHashes.empty()) {
+        tilesHashes = repo.tilesHashes;
+    }
+    if (!repo.packFilename.empty()) {
+        packUrl = server::utils::PathHelper::tilesUrl.urlFor(repo.packFilename);
+    }
 }
 
 communication::ZoomLevel MapImage::ZoomLevel::toThrift() const {
@@ -39,6 +45,12 @@ communication::ZoomLevel MapImage::ZoomLevel::toThrift() const {
     res.scaledSize = scaledResolution.toThrift();
     res.tileSize = tileSize.toThrift();
     res.tilesUrls = tilesUrls;
+    if (tilesHashes) {
+        res.__set_tilesHashes(tilesHashes.value());
+    }
+    if (packUrl) {
+        res.__set_packUrl(packUrl.value());
+    }
     return res;
 }
 }
@@ -5,6 +5,8 @@
 #include <string>
 #include <vector>
 
+#include <boost/optional.hpp>
+
 #include <communication/structs_types.h>
 
 #include <repository/MapImages.h>
@@ -29,6 +31,8 @@ struct MapImage {
         Size scaledResolution;
         Size tileSize;
         std::vector<std::vector<std::string>> tilesUrls;
+        boost::optional<std::vector<std::vector<std::string>>> tilesHashes;
+        boost::optional<std::string> packUrl;
     };
 
     using thrift_t = communication::MapImage;
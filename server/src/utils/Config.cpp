@@ -9,6 +9,8 @@
 namespace utils {
 
 const char *Config::argServerPort = "serverPort";
+const char *Config::argServerProtocol = "serverProtocol";
+const char *Config::argServerCompression = "serverCompression";
 
 const char *Config::argDatabaseHost = "databaseHost";
 const char *Config::argDatabaseUser = "databaseUser";
@@ -34,6 +36,9 @@ void Config::loadFromFile(const std::string &path) {
 
     po::options_description opts("Config file");
     opts.add_options()(argServerPort, po::value(&serverPort)->default_value(9090));
+    opts.add_options()(argServerProtocol, po::value(&serverProtocol)->default_value("binary"));
+    opts.add_options()(argServerCompression,
+                       po::value(&serverCompression)->default_value("none"));
 
     opts.add_options()(argDatabaseHost, po::value(&databaseHost)->default_value("localhost"));
     opts.add_options()(argDatabaseUser, po::value(&databaseUser)->required());
@@ -61,6 +66,8 @@ void Config::loadFromFile(const std::string &path) {
 }
 
 void Config::validate() const {
+    validateOption(argServerProtocol, serverProtocol, {"binary", "compact"});
+    validateOption(argServerCompression, serverCompression, {"none", "zlib"});
     validateDirectory(publicFolderPath);
     validateDirectory(tmpFolderPath);
     validateDirectory(mapTilesFolderPath);
@@ -73,4 +80,14 @@ void Config::validateDirectory(const std::string &path) const {
         throw std::runtime_error(path + " is not a directory.");
     }
 }
-}
\ No newline at end of file
+
+void Config::validateOption(const std::string &name, const std::string &value,
+                            const std::vector<std::string> &allowed) const {
+    for (const auto &option : allowed) {
+        if (value == option) {
+            return;
+        }
+    }
+    throw std::runtime_error(value + " is not a valid value of " + name + ".");
+}
+}
@@ -3,6 +3,8 @@
 
 #include <chrono>
 #include <iostream>
+#include <string>
+#include <vector>
 
 namespace utils {
 
@@ -11,6 +13,9 @@ public:
     Config(const std::string &configPath);
 
     std::uint16_t serverPort;
+    // wire format, has to match clients: "binary" or "compact", "none" or "zlib"
+    std::string serverProtocol;
+    std::string serverCompression;
 
     std::string databaseHost;
     std::string databaseUser;
@@ -29,6 +34,8 @@ public:
 
 private:
     static const char *argServerPort;
+    static const char *argServerProtocol;
+    static const char *argServerCompression;
 
     static const char *argDatabaseHost;
     static const char *argDatabaseUser;
@@ -48,6 +55,8 @@ private:
     void loadFromFile(const std::string &path);
     void validate() const;
     void validateDirectory(const std::string &path) const;
+    void validateOption(const std::string &name, const std::string &value,
+                        const std::vector<std::string> &allowed) const;
 };
 }
 
@@ -111,6 +111,7 @@ cur.execute('''
 		id INT NOT NULL,
 		receive_date VARCHAR NULL,
 		experiment_id INT NOT NULL REFERENCES experiments(id) ON DELETE CASCADE,
+		client_id VARCHAR NULL UNIQUE,
 		content JSONB NOT NULL
 	)
 ''')
@@ -122,6 +123,7 @@ cur.execute('''
 	INSERT INTO counters VALUES
 		('last_exhibit_version', 0),
 		('last_deleted_exhibit_version', 0),
+		('last_purged_exhibit_version', 0),
 		('last_report_id', 0)
 ''')
 
@@ -2,8 +2,8 @@ import os
 os.environ['DJANGO_SETTINGS_MODULE'] = 'cnk.settings'
 from django.conf      import settings
 from thrift           import Thrift
-from thrift.transport import TSocket, TTransport
-from thrift.protocol  import TBinaryProtocol
+from thrift.transport import TSocket, TTransport, TZlibTransport
+from thrift.protocol  import TBinaryProtocol, TCompactProtocol
 from thrift.server    import TServer
 from server           import Server
 from structs.ttypes   import *
@@ -13,6 +13,9 @@ class ThriftCommunicator:
     def __init__(self):
         self.host = getattr(settings, 'THRIFT_HOST', 'localhost')
         self.port = int(getattr(settings, 'THRIFT_PORT', 9090))
+        # has to match serverProtocol and serverCompression from server config
+        self.wire_protocol = getattr(settings, 'THRIFT_PROTOCOL', 'binary')
+        self.wire_compression = getattr(settings, 'THRIFT_COMPRESSION', 'none')
         self.transport = None
         self.protocol = None
         self.client = None
@@ -20,7 +23,12 @@ class ThriftCommunicator:
     def _start_connection(self):
         socket = TSocket.TSocket(self.host, self.port)
         self.transport = TTransport.TFramedTransport(socket)
-        self.protocol = TBinaryProtocol.TBinaryProtocol(self.transport)
+        if self.wire_compression == 'zlib':
+            self.transport = TZlibTransport.TZlibTransport(self.transport)
+        if self.wire_protocol == 'compact':
+            self.protocol = TCompactProtocol.TCompactProtocol(self.transport)
+        else:
+            self.protocol = TBinaryProtocol.TBinaryProtocol(self.transport)
         self.transport.open()
         self.client = Server.Client(self.protocol)
         return self.client
@@ -5,5 +5,7 @@ from cnk.settings import *
 from cnk_admin_site.constants import *
 THRIFT_HOST = 'localhost'
 THRIFT_PORT = 9090
+THRIFT_PROTOCOL = 'binary'
+THRIFT_COMPRESSION = 'none'
 FLOOR_TILES_DIRECTORY = "{}".format('/static/map_tiles/{f}/{z}/{x}/{y}.jpg')
 EXCEL_FILES_ROOT = os.path.join(BASE_DIR, 'download/excel_files')